@@ -0,0 +1,49 @@
+package one.digitalinnovation.beerstock.config;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.beerstock.controller.ClusterSecretFilter;
+import one.digitalinnovation.beerstock.controller.ShardRoutingFilter;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.service.ClusterMembershipService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(ClusterProperties.class)
+@ConditionalOnProperty(prefix = "beerstock.cluster", name = "enabled", havingValue = "true")
+public class ClusterConfig {
+    private static final String BEERS_URL_PATTERN = "/api/v1/beers/*";
+    private static final String INTERNAL_URL_PATTERN = ClusterMembershipService.INTERNAL_API_PATH + "/*";
+
+    @Bean
+    public HttpClient clusterHttpClient(ClusterProperties clusterProperties) {
+        return HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(clusterProperties.getRequestTimeoutMs()))
+                .build();
+    }
+
+    @Bean //Encaminha para o dono do shard as requisicoes que chegam na instancia errada;
+    public FilterRegistrationBean<ShardRoutingFilter> shardRoutingFilter(ClusterMembershipService clusterMembershipService,
+                                                                         BeerRepository beerRepository,
+                                                                         HttpClient clusterHttpClient,
+                                                                         ObjectMapper objectMapper) {
+        FilterRegistrationBean<ShardRoutingFilter> registration = new FilterRegistrationBean<>(
+                new ShardRoutingFilter(clusterMembershipService, beerRepository, clusterHttpClient, objectMapper));
+        registration.addUrlPatterns(ShardRoutingFilter.BEERS_API_PATH, BEERS_URL_PATTERN);
+        return registration;
+    }
+
+    @Bean //Sem o segredo do cluster, a API interna responde 403;
+    public FilterRegistrationBean<ClusterSecretFilter> clusterSecretFilter(ClusterMembershipService clusterMembershipService) {
+        FilterRegistrationBean<ClusterSecretFilter> registration = new FilterRegistrationBean<>(
+                new ClusterSecretFilter(clusterMembershipService));
+        registration.addUrlPatterns(INTERNAL_URL_PATTERN);
+        return registration;
+    }
+}
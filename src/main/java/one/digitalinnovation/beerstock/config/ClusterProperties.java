@@ -0,0 +1,18 @@
+package one.digitalinnovation.beerstock.config;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "beerstock.cluster")
+public class ClusterProperties {
+    private boolean enabled = false; //Modo multi-node desligado por padrao;
+    private String selfUrl; //URL base desta instancia, ex: http://localhost:8080;
+    private String secret; //Segredo compartilhado: exigido na API interna e para aceitar requisicoes encaminhadas;
+    private Integer nodeIndex; //Faixa de IDs desta instancia: fixa e unica no cluster (nao muda quando a lista de nodes muda);
+    private List<String> nodes = new ArrayList<>(); //URLs base de todas as instancias que podem entrar no cluster;
+    private int virtualNodes = 128; //Pontos por instancia no anel de hashing consistente;
+    private long heartbeatIntervalMs = 1000;
+    private long requestTimeoutMs = 2000;
+}
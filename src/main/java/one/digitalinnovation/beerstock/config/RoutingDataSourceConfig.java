@@ -0,0 +1,72 @@
+package one.digitalinnovation.beerstock.config;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import javax.sql.DataSource;
+import java.util.Map;
+
+//Perfil performance: pools separados para leitura e escrita, dimensionados pela latencia medida;
+@Slf4j
+@Configuration
+@Profile("performance")
+@EnableConfigurationProperties(RoutingDataSourceProperties.class)
+public class RoutingDataSourceConfig {
+    private static final String WRITE_POOL_NAME = "beerstock-write";
+    private static final String READ_POOL_NAME = "beerstock-read";
+
+    @Bean
+    public HikariDataSource writeDataSource(DataSourceProperties dataSourceProperties,
+                                            RoutingDataSourceProperties routingDataSourceProperties) {
+        return buildPool(WRITE_POOL_NAME, dataSourceProperties, routingDataSourceProperties.getWrite(), false);
+    }
+
+    @Bean
+    public HikariDataSource readDataSource(DataSourceProperties dataSourceProperties,
+                                           RoutingDataSourceProperties routingDataSourceProperties) {
+        return buildPool(READ_POOL_NAME, dataSourceProperties, routingDataSourceProperties.getRead(), true);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writeDataSource") HikariDataSource writeDataSource,
+                                 @Qualifier("readDataSource") HikariDataSource readDataSource) {
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.of(
+                ReadWriteRoutingDataSource.Route.WRITE, writeDataSource,
+                ReadWriteRoutingDataSource.Route.READ, readDataSource));
+        routingDataSource.setDefaultTargetDataSource(writeDataSource);
+        routingDataSource.afterPropertiesSet();
+        //A conexao so e obtida no primeiro comando SQL, quando a transacao ja sabe se e readOnly;
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private HikariDataSource buildPool(String poolName, DataSourceProperties dataSourceProperties,
+                                       RoutingDataSourceProperties.Pool pool, boolean readOnly) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (pool.getUrl() != null) {
+            dataSource.setJdbcUrl(pool.getUrl());
+        }
+        if (pool.getUsername() != null) {
+            dataSource.setUsername(pool.getUsername());
+        }
+        if (pool.getPassword() != null) {
+            dataSource.setPassword(pool.getPassword());
+        }
+        int poolSize = pool.poolSize();
+        dataSource.setPoolName(poolName);
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setMinimumIdle(poolSize); //Pool de tamanho fixo, sem abrir conexoes no pico;
+        dataSource.setConnectionTimeout(pool.getConnectionTimeoutMs());
+        dataSource.setReadOnly(readOnly);
+        log.info("Pool {} sized to {} connections ({} req/s x {} ms x {} headroom)", poolName, poolSize,
+                pool.getTargetRequestsPerSecond(), pool.getConnectionUsageMs(), 1 + pool.getHeadroom());
+        return dataSource;
+    }
+}
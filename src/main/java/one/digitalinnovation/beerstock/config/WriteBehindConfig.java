@@ -0,0 +1,50 @@
+package one.digitalinnovation.beerstock.config;
+import one.digitalinnovation.beerstock.service.StockJournal;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Set;
+
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(WriteBehindProperties.class)
+@ConditionalOnProperty(prefix = "beerstock.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindConfig {
+    private static final Set<String> RECREATING_DDL_AUTO = Set.of("create", "create-drop");
+
+    @Bean(destroyMethod = "close")
+    public StockJournal stockJournal(WriteBehindProperties writeBehindProperties, Environment environment) throws IOException {
+        requireDurableDatabase(environment);
+        rejectClusterMode(environment);
+        return new StockJournal(Paths.get(writeBehindProperties.getJournalDirectory()),
+                writeBehindProperties.getMaxGroupCommitSize());
+    }
+
+    //O log e apagado depois do flush e reaplicado na subida: o BD tem que guardar a tabela beer entre as execucoes;
+    private static void requireDurableDatabase(Environment environment) {
+        String url = environment.getProperty("beerstock.datasource.write.url",
+                environment.getProperty("spring.datasource.url", ""));
+        if (url.isBlank() || url.startsWith("jdbc:h2:mem:")) {
+            throw new IllegalStateException("beerstock.write-behind.enabled requires a durable database, but the datasource url is '"
+                    + url + "'. Use a file or server database (e.g. jdbc:h2:file:./data/beerstock).");
+        }
+        String ddlAuto = environment.getProperty("spring.jpa.hibernate.ddl-auto", "none");
+        if (RECREATING_DDL_AUTO.contains(ddlAuto.trim().toLowerCase())) {
+            throw new IllegalStateException("beerstock.write-behind.enabled cannot be used with spring.jpa.hibernate.ddl-auto="
+                    + ddlAuto + ": recreating the schema discards the stock the journal would recover. Use update, validate or none.");
+        }
+    }
+
+    //A entrega de cervejas entre instancias le e grava a tabela beer direto: perderia os increments que so estao no log;
+    private static void rejectClusterMode(Environment environment) {
+        if (environment.getProperty("beerstock.cluster.enabled", Boolean.class, false)) {
+            throw new IllegalStateException("beerstock.write-behind.enabled cannot be combined with beerstock.cluster.enabled: "
+                    + "the cluster hand-off copies beers from the beer table and would drop increments that are only in the stock journal.");
+        }
+    }
+}
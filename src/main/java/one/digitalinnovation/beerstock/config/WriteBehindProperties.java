@@ -0,0 +1,12 @@
+package one.digitalinnovation.beerstock.config;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "beerstock.write-behind")
+public class WriteBehindProperties {
+    private boolean enabled = false; //Modo write-behind desligado por padrao (cada increment grava direto no BD);
+    private String journalDirectory = "data/stock-journal"; //Onde fica o log duravel dos incrementos;
+    private int maxGroupCommitSize = 512; //Maximo de registros por fsync;
+    private long flushIntervalMs = 200; //Intervalo do envio em lote para a tabela beer;
+}
@@ -0,0 +1,55 @@
+package one.digitalinnovation.beerstock.controller;
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.exception.BeerHandOffConflictException;
+import one.digitalinnovation.beerstock.exception.BeerNotOwnedException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.service.ClusterMembershipService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import javax.validation.Valid;
+import java.util.Set;
+
+//Endpoints internos usados apenas entre as instancias do cluster;
+@RestController
+@RequestMapping(ClusterMembershipService.INTERNAL_API_PATH)
+@ConditionalOnProperty(prefix = "beerstock.cluster", name = "enabled", havingValue = "true")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class ClusterController {
+    private final ClusterMembershipService clusterMembershipService;
+
+    @GetMapping("/ping") //503 ate a primeira rodada de membros: as outras instancias ainda nao contam com esta;
+    public ResponseEntity<Set<String>> ping() {
+        if (!clusterMembershipService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(clusterMembershipService.getLiveNodes());
+    }
+
+    @GetMapping("/node-index") //Respondido mesmo antes de ficar pronta: e o que impede outra instancia de subir com a mesma faixa;
+    public int nodeIndex() {
+        return clusterMembershipService.getNodeIndex();
+    }
+
+    @GetMapping("/settled") //true quando esta instancia, com o anel nodes, nao tem mais cervejas para entregar;
+    public boolean hasNothingToHandOff(@RequestParam Set<String> nodes) {
+        return clusterMembershipService.hasNothingToHandOff(nodes);
+    }
+
+    @GetMapping("/max-id")
+    public long findMaxIdBetween(@RequestParam long firstId, @RequestParam long lastId) {
+        return clusterMembershipService.findMaxIdBetween(firstId, lastId);
+    }
+
+    @PutMapping("/beers")
+    public BeerDTO receiveHandOff(@RequestBody @Valid BeerDTO beerDTO,
+                                  @RequestHeader(ClusterMembershipService.FORWARDED_HEADER) String senderUrl,
+                                  @RequestHeader(value = ClusterMembershipService.LEAVING_HEADER, defaultValue = "false") boolean senderLeaving,
+                                  @RequestParam(defaultValue = "false") boolean assignNewId)
+            throws BeerHandOffConflictException, BeerNotOwnedException, BeerStockExceededException {
+        return clusterMembershipService.receiveHandOff(beerDTO, senderUrl, senderLeaving, assignNewId);
+    }
+}
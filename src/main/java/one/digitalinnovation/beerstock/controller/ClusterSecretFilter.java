@@ -0,0 +1,28 @@
+package one.digitalinnovation.beerstock.controller;
+import one.digitalinnovation.beerstock.service.ClusterMembershipService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+//A API interna (hand-off, heartbeat, faixa de IDs) so atende outras instancias do cluster, que enviam o segredo compartilhado;
+public class ClusterSecretFilter extends OncePerRequestFilter {
+    private final ClusterMembershipService clusterMembershipService;
+
+    public ClusterSecretFilter(ClusterMembershipService clusterMembershipService) {
+        this.clusterMembershipService = clusterMembershipService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!clusterMembershipService.isClusterSecret(request.getHeader(ClusterMembershipService.SECRET_HEADER))) {
+            response.sendError(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,434 @@
+package one.digitalinnovation.beerstock.controller;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.service.ClusterMembershipService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UriUtils;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.concurrent.locks.Lock;
+
+//Roteia cada requisicao para a instancia dona do shard da cerveja (chave: nome da cerveja);
+@Slf4j
+public class ShardRoutingFilter extends OncePerRequestFilter {
+    public static final String BEERS_API_PATH = "/api/v1/beers";
+
+    private final ClusterMembershipService clusterMembershipService;
+    private final BeerRepository beerRepository;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+
+    public ShardRoutingFilter(ClusterMembershipService clusterMembershipService, BeerRepository beerRepository,
+                              HttpClient httpClient, ObjectMapper objectMapper) {
+        this.clusterMembershipService = clusterMembershipService;
+        this.beerRepository = beerRepository;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+    }
+
+    //O lock de leitura so fica preso enquanto a requisicao roda localmente, nunca durante chamadas HTTP para outras instancias;
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!clusterMembershipService.isReady()) { //Sem a primeira rodada de membros, esta instancia nao sabe quem e dono de nada;
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        String subPath = request.getRequestURI().substring(request.getContextPath().length() + BEERS_API_PATH.length());
+        String[] segments = subPath.startsWith("/") ? subPath.substring(1).split("/") : new String[0];
+        String method = request.getMethod();
+        //Sem o segredo do cluster, o cabecalho de encaminhamento e ignorado: a requisicao e roteada como a de um cliente;
+        boolean forwarded = request.getHeader(ClusterMembershipService.FORWARDED_HEADER) != null
+                && clusterMembershipService.isClusterSecret(request.getHeader(ClusterMembershipService.SECRET_HEADER));
+        boolean ownerRequest = forwarded && request.getHeader(ClusterMembershipService.OWNER_REQUEST_HEADER) != null;
+
+        if (segments.length == 0 && "POST".equals(method)) {
+            byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+            JsonNode name = readTree(body).path("name");
+            HttpServletRequest cachedRequest = new CachedBodyRequest(request, body);
+            if (!name.isTextual()) {
+                serveLocally(cachedRequest, response, filterChain); //Deixa a validacao do controller responder;
+            } else if (ownerRequest) {
+                serveAsOwner(name.asText(), cachedRequest, response, filterChain, body);
+            } else if (forwarded) {
+                serveForwardedCreate(name.asText(), cachedRequest, response, filterChain);
+            } else {
+                routeByName(name.asText(), cachedRequest, response, filterChain, body);
+            }
+        } else if (segments.length == 0 && "GET".equals(method) && !forwarded) {
+            listFromAllNodes(request, response, filterChain);
+        } else if (segments.length == 1 && "GET".equals(method) && (!forwarded || ownerRequest)) {
+            String name = UriUtils.decode(segments[0], StandardCharsets.UTF_8);
+            if (ownerRequest) {
+                serveAsOwner(name, request, response, filterChain, new byte[0]);
+            } else {
+                routeByName(name, request, response, filterChain, new byte[0]);
+            }
+        } else if (segments.length >= 1 && ("DELETE".equals(method) || "PATCH".equals(method))) {
+            byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+            routeById(segments[0], new CachedBodyRequest(request, body), response, filterChain, body, forwarded);
+        } else {
+            serveLocally(request, response, filterChain); //Ja foi roteada por outra instancia: atende localmente;
+        }
+    }
+
+    private void serveLocally(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Lock lock = clusterMembershipService.requestLock(); //O anel nao muda enquanto a requisicao roda aqui;
+        lock.lock();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void serveForwardedCreate(String name, HttpServletRequest request, HttpServletResponse response,
+                                      FilterChain filterChain) throws ServletException, IOException {
+        serveLocally(request, response, filterChain);
+        if (!clusterMembershipService.isOwnedLocally(name)) {
+            clusterMembershipService.requestRebalance(); //A outra instancia tinha um anel diferente: move a cerveja depois;
+        }
+    }
+
+    private void routeByName(String name, HttpServletRequest request, HttpServletResponse response,
+                             FilterChain filterChain, byte[] body) throws ServletException, IOException {
+        String owner = clusterMembershipService.ownerOf(name);
+        if (owner.equals(clusterMembershipService.getSelfUrl())) {
+            serveAsOwner(name, request, response, filterChain, body);
+            return;
+        }
+        try {
+            copyResponse(forward(owner, request, body, true), response);
+        } catch (IOException e) {
+            log.warn("Could not forward request to shard owner {}: {}", owner, e.getMessage());
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+    }
+
+    //Enquanto outra instancia ainda pode estar entregando cervejas para esta, o dono procura nela antes de criar ou responder 404;
+    private void serveAsOwner(String name, HttpServletRequest request, HttpServletResponse response,
+                              FilterChain filterChain, byte[] body) throws ServletException, IOException {
+        if (!serveIfSettledOrLocal(name, request, response, filterChain)) {
+            Map<String, HttpResponse<byte[]>> holders;
+            try {
+                holders = findOnPeers(name, request);
+            } catch (IOException e) {
+                log.warn("Could not look up beer {} on peers during hand-off: {}", name, e.getMessage());
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+                return;
+            }
+            if (holders.isEmpty()) {
+                serveLocally(request, response, filterChain); //Nenhuma instancia tem a cerveja;
+            } else if ("GET".equals(request.getMethod())) {
+                copyResponse(holders.values().iterator().next(), response);
+            } else {
+                String holder = holders.keySet().iterator().next(); //Quem ainda tem a cerveja responde que ela ja existe;
+                try {
+                    copyResponse(forward(holder, request, body, false), response);
+                } catch (IOException e) {
+                    log.warn("Could not forward request to peer {}: {}", holder, e.getMessage());
+                    response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+                }
+            }
+        }
+        if ("POST".equals(request.getMethod()) && !clusterMembershipService.isOwnedLocally(name)) {
+            clusterMembershipService.requestRebalance(); //A outra instancia tinha um anel diferente: move a cerveja depois;
+        }
+    }
+
+    private boolean serveIfSettledOrLocal(String name, HttpServletRequest request, HttpServletResponse response,
+                                          FilterChain filterChain) throws ServletException, IOException {
+        Lock lock = clusterMembershipService.requestLock();
+        lock.lock();
+        try {
+            if (!clusterMembershipService.isSettled() && beerRepository.findByName(name).isEmpty()) {
+                return false;
+            }
+            filterChain.doFilter(request, response);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Instancias que tem a cerveja; falha (IOException) se alguma nao respondeu, para nao criar uma cerveja duplicada;
+    private Map<String, HttpResponse<byte[]>> findOnPeers(String name, HttpServletRequest request) throws IOException {
+        String path = request.getContextPath() + BEERS_API_PATH + "/" + UriUtils.encodePathSegment(name, StandardCharsets.UTF_8);
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses = sendToPeers(peer -> HttpRequest.newBuilder(URI.create(peer + path))
+                .timeout(Duration.ofMillis(clusterMembershipService.getClusterRequestTimeoutMs()))
+                .header(ClusterMembershipService.FORWARDED_HEADER, clusterMembershipService.getSelfUrl())
+                .header(ClusterMembershipService.SECRET_HEADER, clusterMembershipService.getClusterSecret())
+                .GET()
+                .build());
+        Map<String, HttpResponse<byte[]>> holders = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<HttpResponse<byte[]>>> peerResponse : responses.entrySet()) {
+            HttpResponse<byte[]> lookup = await(peerResponse.getValue());
+            if (lookup.statusCode() == HttpStatus.OK.value()) {
+                holders.put(peerResponse.getKey(), lookup);
+            } else if (lookup.statusCode() != HttpStatus.NOT_FOUND.value()) {
+                throw new IOException("status " + lookup.statusCode() + " from " + peerResponse.getKey());
+            }
+        }
+        return holders;
+    }
+
+    //IDs nao indicam o shard (a chave e o nome), mas sao unicos no cluster: procura a instancia que tem a cerveja;
+    private void routeById(String idSegment, HttpServletRequest request, HttpServletResponse response,
+                           FilterChain filterChain, byte[] body, boolean forwarded) throws ServletException, IOException {
+        Long id = parseId(idSegment);
+        if (id == null) {
+            serveLocally(request, response, filterChain);
+            return;
+        }
+        if (serveIfLocal(id, request, response, filterChain)) {
+            return;
+        }
+        if (forwarded) {
+            response.sendError(HttpStatus.NOT_FOUND.value()); //A instancia que encaminhou procura nas outras;
+            return;
+        }
+        //So a instancia que tem o ID atende; as outras respondem 404 sem mudar nada;
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses = sendToPeers(peer -> forwardedRequest(peer, request, body, false));
+        boolean peerUnavailable = false;
+        for (Map.Entry<String, CompletableFuture<HttpResponse<byte[]>>> peerResponse : responses.entrySet()) {
+            try {
+                HttpResponse<byte[]> forwardedResponse = await(peerResponse.getValue());
+                if (forwardedResponse.statusCode() >= HttpStatus.INTERNAL_SERVER_ERROR.value()) { //Erro na outra instancia nao e "achei";
+                    throw new IOException("status " + forwardedResponse.statusCode());
+                }
+                if (forwardedResponse.statusCode() != HttpStatus.NOT_FOUND.value()) {
+                    copyResponse(forwardedResponse, response);
+                    return;
+                }
+            } catch (IOException e) {
+                log.warn("Could not forward request to peer {}: {}", peerResponse.getKey(), e.getMessage());
+                peerUnavailable = true;
+            }
+        }
+        if (peerUnavailable) { //A cerveja pode estar na instancia que nao respondeu: 404 seria uma resposta errada;
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+        } else if (!serveIfLocal(id, request, response, filterChain)) {
+            response.sendError(HttpStatus.NOT_FOUND.value()); //Nenhuma instancia tem a cerveja;
+        }
+    }
+
+    //Atende se a cerveja esta aqui; se ela esta saindo desta instancia (hand-off em andamento), pede para tentar de novo;
+    private boolean serveIfLocal(Long id, HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Lock lock = clusterMembershipService.requestLock();
+        lock.lock();
+        try {
+            Optional<Beer> localBeer = beerRepository.findById(id);
+            if (localBeer.isEmpty()) {
+                return false;
+            }
+            if (clusterMembershipService.isOwnedLocally(localBeer.get().getName())) {
+                filterChain.doFilter(request, response);
+            } else {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void listFromAllNodes(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses =
+                sendToPeers(peer -> forwardedRequest(peer, request, new byte[0], false));
+        ContentCachingResponseWrapper localResponse = new ContentCachingResponseWrapper(response);
+        serveLocally(request, localResponse, filterChain);
+        if (localResponse.getStatus() != HttpStatus.OK.value()) {
+            localResponse.copyBodyToResponse();
+            return;
+        }
+        ArrayNode beers = objectMapper.createArrayNode();
+        addAll(beers, localResponse.getContentAsByteArray());
+        for (Map.Entry<String, CompletableFuture<HttpResponse<byte[]>>> peerResponse : responses.entrySet()) {
+            try {
+                HttpResponse<byte[]> listResponse = await(peerResponse.getValue());
+                if (listResponse.statusCode() != HttpStatus.OK.value()) {
+                    throw new IOException("status " + listResponse.statusCode());
+                }
+                addAll(beers, listResponse.body());
+            } catch (IOException e) { //Lista parcial pareceria completa para quem chamou;
+                log.warn("Could not list beers from peer {}: {}", peerResponse.getKey(), e.getMessage());
+                localResponse.reset();
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+                return;
+            }
+        }
+        localResponse.resetBuffer();
+        localResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(localResponse.getOutputStream(), beers);
+        localResponse.copyBodyToResponse();
+    }
+
+    private HttpResponse<byte[]> forward(String node, HttpServletRequest request, byte[] body, boolean ownerRequest)
+            throws IOException {
+        try {
+            return httpClient.send(forwardedRequest(node, request, body, ownerRequest), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    //Chamadas em paralelo: a latencia e a da instancia mais lenta, nao a soma de todas;
+    private Map<String, CompletableFuture<HttpResponse<byte[]>>> sendToPeers(Function<String, HttpRequest> requestFor) {
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> responses = new LinkedHashMap<>();
+        for (String peer : clusterMembershipService.getLivePeers()) {
+            responses.put(peer, httpClient.sendAsync(requestFor.apply(peer), HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        return responses;
+    }
+
+    private static HttpResponse<byte[]> await(CompletableFuture<HttpResponse<byte[]>> response) throws IOException {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private HttpRequest forwardedRequest(String node, HttpServletRequest request, byte[] body, boolean ownerRequest) {
+        String query = request.getQueryString() != null ? "?" + request.getQueryString() : "";
+        HttpRequest.Builder forwardedRequest = HttpRequest.newBuilder(URI.create(node + request.getRequestURI() + query))
+                .timeout(Duration.ofMillis(clusterMembershipService.getClusterRequestTimeoutMs()))
+                .header(ClusterMembershipService.FORWARDED_HEADER, clusterMembershipService.getSelfUrl())
+                .header(ClusterMembershipService.SECRET_HEADER, clusterMembershipService.getClusterSecret())
+                .method(request.getMethod(), body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        if (request.getContentType() != null) {
+            forwardedRequest.header(HttpHeaders.CONTENT_TYPE, request.getContentType());
+        }
+        if (request.getHeader(HttpHeaders.ACCEPT) != null) {
+            forwardedRequest.header(HttpHeaders.ACCEPT, request.getHeader(HttpHeaders.ACCEPT));
+        }
+        if (ownerRequest) {
+            forwardedRequest.header(ClusterMembershipService.OWNER_REQUEST_HEADER, "true");
+        }
+        return forwardedRequest.build();
+    }
+
+    private void copyResponse(HttpResponse<byte[]> source, HttpServletResponse target) throws IOException {
+        target.setStatus(source.statusCode());
+        source.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(target::setContentType);
+        target.getOutputStream().write(source.body());
+    }
+
+    private JsonNode readTree(byte[] body) {
+        try {
+            JsonNode node = objectMapper.readTree(body);
+            return node != null ? node : objectMapper.missingNode();
+        } catch (IOException e) {
+            return objectMapper.missingNode();
+        }
+    }
+
+    private void addAll(ArrayNode beers, byte[] body) {
+        JsonNode node = readTree(body);
+        if (node.isArray()) {
+            beers.addAll((ArrayNode) node);
+        }
+    }
+
+    private static Long parseId(String segment) {
+        try {
+            return Long.valueOf(segment);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    //Permite ler o corpo da requisicao no filtro e de novo no controller;
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override //O corpo ja esta todo em memoria: os dados estao disponiveis na hora;
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package one.digitalinnovation.beerstock.exception;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class BeerHandOffConflictException extends Exception {
+    public BeerHandOffConflictException(Long id, String beerName) {
+        super(String.format("Beer with id %s and name %s conflicts with a different beer already in this node.", id, beerName));
+    }
+}
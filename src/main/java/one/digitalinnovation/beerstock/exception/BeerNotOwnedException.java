@@ -0,0 +1,10 @@
+package one.digitalinnovation.beerstock.exception;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class BeerNotOwnedException extends Exception {
+    public BeerNotOwnedException(String beerName) {
+        super(String.format("Beer with name %s is not owned by this node in the current cluster membership.", beerName));
+    }
+}
@@ -7,4 +7,8 @@ public class BeerStockExceededException extends Exception {
     public BeerStockExceededException(Long id, int quantityToIncrement) {
         super(String.format("Beers with %s ID to increment informed exceeds the max stock capacity: %s", id, quantityToIncrement));
     }
+
+    public BeerStockExceededException(String beerName, int quantity, int max) {
+        super(String.format("Beer %s has a stock of %s, above its max stock capacity: %s", beerName, quantity, max));
+    }
 }
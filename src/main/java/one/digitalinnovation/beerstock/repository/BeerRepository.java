@@ -1,9 +1,25 @@
 package one.digitalinnovation.beerstock.repository;
 import one.digitalinnovation.beerstock.entity.Beer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.Optional;
 
 //Papel de "conversar" (gerenciamento) com o BD;
 public interface BeerRepository extends JpaRepository<Beer, Long> { //Entidade e Id;
     Optional<Beer> findByName(String name); //Busca pelo nome das cervejas;
+
+    //Maior ID dentro da faixa de uma instancia (null se nao houver nenhum);
+    @Query("SELECT MAX(b.id) FROM Beer b WHERE b.id BETWEEN :firstId AND :lastId")
+    Long findMaxIdBetween(@Param("firstId") Long firstId, @Param("lastId") Long lastId);
+
+    //Insere mantendo o ID original (usado quando uma cerveja muda de shard no cluster);
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO beer (id, name, brand, max, quantity, type) VALUES (:id, :name, :brand, :max, :quantity, :type)",
+            nativeQuery = true)
+    void insertWithId(@Param("id") Long id, @Param("name") String name, @Param("brand") String brand,
+                      @Param("max") int max, @Param("quantity") int quantity, @Param("type") String type);
 }
@@ -0,0 +1,452 @@
+package one.digitalinnovation.beerstock.service;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.config.ClusterProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.exception.BeerHandOffConflictException;
+import one.digitalinnovation.beerstock.exception.BeerNotOwnedException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Mantem o anel de instancias vivas e move as cervejas para o dono do shard quando o anel muda;
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "beerstock.cluster", name = "enabled", havingValue = "true")
+public class ClusterMembershipService {
+    public static final String INTERNAL_API_PATH = "/internal/v1/cluster";
+    public static final String FORWARDED_HEADER = "X-Beerstock-Forwarded";
+    public static final String LEAVING_HEADER = "X-Beerstock-Leaving";
+    public static final String SECRET_HEADER = "X-Beerstock-Cluster-Secret";
+    public static final String OWNER_REQUEST_HEADER = "X-Beerstock-Owner-Request"; //Encaminhada ao dono (e nao uma consulta local);
+    private static final long ID_RANGE_PER_NODE = 1_000_000_000_000L; //Faixa de IDs de cada instancia, para nao colidirem no cluster;
+    private static final String CURRENT_ID_QUERY = "SELECT s.CURRENT_VALUE FROM INFORMATION_SCHEMA.COLUMNS c"
+            + " JOIN INFORMATION_SCHEMA.SEQUENCES s ON s.SEQUENCE_SCHEMA = c.TABLE_SCHEMA AND s.SEQUENCE_NAME = c.SEQUENCE_NAME"
+            + " WHERE c.TABLE_NAME = 'BEER' AND c.COLUMN_NAME = 'ID'";
+
+    private final ClusterProperties clusterProperties;
+    private final BeerRepository beerRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+    private final String selfUrl;
+    //Leitura: requisicoes rodando localmente; escrita: so a troca do anel (a entrega das cervejas roda fora do lock);
+    private final ReadWriteLock ownershipLock = new ReentrantReadWriteLock();
+    private volatile ConsistentHashRing ring;
+    private volatile boolean handOffPending;
+    private volatile boolean leaving;
+    private volatile long lastOwnId; //Ultimo ID da faixa desta instancia;
+    private volatile boolean ready; //So atende requisicoes depois da primeira rodada de membros;
+    private volatile boolean handingOff;
+    //Depois de trocar o anel, as outras instancias ainda podem ter cervejas que agora sao desta: ate todas confirmarem
+    //que nao tem mais nada para entregar, quem nao acha uma cerveja aqui procura nelas antes de responder 404 ou criar;
+    private volatile boolean settled;
+
+    public ClusterMembershipService(ClusterProperties clusterProperties, BeerRepository beerRepository,
+                                    JdbcTemplate jdbcTemplate, HttpClient clusterHttpClient, ObjectMapper objectMapper) {
+        if (clusterProperties.getSelfUrl() == null || clusterProperties.getSelfUrl().isBlank()) {
+            throw new IllegalStateException("beerstock.cluster.self-url is required when the cluster mode is enabled.");
+        }
+        if (clusterProperties.getSecret() == null || clusterProperties.getSecret().isBlank()) {
+            throw new IllegalStateException("beerstock.cluster.secret is required when the cluster mode is enabled.");
+        }
+        if (clusterProperties.getNodeIndex() == null || clusterProperties.getNodeIndex() < 0) {
+            throw new IllegalStateException("beerstock.cluster.node-index is required when the cluster mode is enabled"
+                    + " and must be a non-negative number that no other node uses.");
+        }
+        this.clusterProperties = clusterProperties;
+        this.beerRepository = beerRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.httpClient = clusterHttpClient;
+        this.objectMapper = objectMapper;
+        this.selfUrl = normalize(clusterProperties.getSelfUrl());
+        this.ring = new ConsistentHashRing(Set.of(selfUrl), clusterProperties.getVirtualNodes());
+    }
+
+    public String getSelfUrl() {
+        return selfUrl;
+    }
+
+    public String getClusterSecret() {
+        return clusterProperties.getSecret();
+    }
+
+    //Comparacao em tempo constante: o tempo de resposta nao indica quantos caracteres do segredo estao certos;
+    public boolean isClusterSecret(String value) {
+        return value != null && MessageDigest.isEqual(value.getBytes(StandardCharsets.UTF_8),
+                clusterProperties.getSecret().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getNodeIndex() {
+        return clusterProperties.getNodeIndex();
+    }
+
+    @PostConstruct
+    public void checkNodeIndexIsFree() { //Duas instancias com a mesma faixa gerariam os mesmos IDs;
+        for (String node : knownNodes()) {
+            if (!node.equals(selfUrl)) {
+                try {
+                    requireDifferentNodeIndex(node);
+                } catch (IOException e) {
+                    log.debug("Node {} did not answer the node index check: {}", node, e.getMessage()); //Fora do ar: nao usa a faixa;
+                }
+            }
+        }
+    }
+
+    public long getClusterRequestTimeoutMs() {
+        return clusterProperties.getRequestTimeoutMs();
+    }
+
+    public Set<String> getLiveNodes() {
+        return ring.getNodes();
+    }
+
+    public List<String> getLivePeers() {
+        List<String> peers = new ArrayList<>(ring.getNodes());
+        peers.remove(selfUrl);
+        return peers;
+    }
+
+    public String ownerOf(String beerName) {
+        return ring.ownerOf(beerName);
+    }
+
+    public boolean isOwnedLocally(String beerName) {
+        return selfUrl.equals(ownerOf(beerName));
+    }
+
+    public void requestRebalance() {
+        handOffPending = true;
+    }
+
+    public boolean isSettled() {
+        return settled;
+    }
+
+    //Resposta para outra instancia com o anel nodes: nao ha (nem vai haver) cerveja daqui para entregar a ela;
+    public boolean hasNothingToHandOff(Set<String> nodes) {
+        Set<String> normalizedNodes = new TreeSet<>();
+        nodes.stream().map(ClusterMembershipService::normalize).forEach(normalizedNodes::add);
+        return ready && !leaving && !handOffPending && !handingOff && ring.getNodes().equals(normalizedNodes);
+    }
+
+    public Lock requestLock() {
+        return ownershipLock.readLock();
+    }
+
+    @Scheduled(fixedDelayString = "${beerstock.cluster.heartbeat-interval-ms:1000}")
+    public void refreshMembership() {
+        if (leaving) {
+            return;
+        }
+        Set<String> liveNodes = new TreeSet<>();
+        liveNodes.add(selfUrl);
+        for (String node : knownNodes()) {
+            if (!node.equals(selfUrl) && isAlive(node)) {
+                liveNodes.add(node);
+            }
+        }
+        if (!ready) {
+            try {
+                reserveIdRange(liveNodes);
+            } catch (IOException e) {
+                log.warn("Could not reserve the id range, retrying on the next heartbeat: {}", e.getMessage());
+                return;
+            } catch (IllegalStateException e) {
+                log.error("Not joining the cluster: {}", e.getMessage()); //Continua respondendo 503 ate ser corrigido;
+                return;
+            }
+            swapRing(new ConsistentHashRing(liveNodes, clusterProperties.getVirtualNodes()));
+            ready = true;
+            handOffMisplacedBeers(false);
+        } else if (!liveNodes.equals(ring.getNodes())) {
+            swapRing(new ConsistentHashRing(liveNodes, clusterProperties.getVirtualNodes()));
+            handOffMisplacedBeers(false);
+        } else if (handOffPending) {
+            handOffMisplacedBeers(false);
+        }
+        if (!settled) {
+            settled = peersHaveNothingToHandOff();
+        }
+    }
+
+    //Maior ID ja usado da faixa [firstId, lastId] nesta instancia (0 se nenhum);
+    public long findMaxIdBetween(long firstId, long lastId) {
+        Long maxId = beerRepository.findMaxIdBetween(firstId, lastId);
+        return maxId != null ? maxId : 0;
+    }
+
+    @PreDestroy
+    public void leave() { //Saida organizada: entrega todas as cervejas locais para as instancias que ficam;
+        leaving = true;
+        Set<String> remainingNodes = new TreeSet<>(ring.getNodes());
+        remainingNodes.remove(selfUrl);
+        if (!remainingNodes.isEmpty()) {
+            swapRing(new ConsistentHashRing(remainingNodes, clusterProperties.getVirtualNodes()));
+            handOffMisplacedBeers(true);
+        }
+    }
+
+    //Roda com o lock de escrita: nenhuma criacao local pode pegar um ID enquanto a sequencia esta fora da faixa;
+    public BeerDTO receiveHandOff(BeerDTO beerDTO, String senderUrl, boolean senderLeaving, boolean assignNewId)
+            throws BeerHandOffConflictException, BeerNotOwnedException, BeerStockExceededException {
+        //O dono e conferido no anel de quem recebe; se quem envia esta saindo, ele ja nao conta no anel;
+        ConsistentHashRing currentRing = ring;
+        if (senderLeaving && currentRing.getNodes().contains(normalize(senderUrl))) {
+            Set<String> remainingNodes = new TreeSet<>(currentRing.getNodes());
+            remainingNodes.remove(normalize(senderUrl));
+            currentRing = new ConsistentHashRing(remainingNodes, clusterProperties.getVirtualNodes());
+        }
+        if (!ready || !selfUrl.equals(currentRing.ownerOf(beerDTO.getName()))) {
+            throw new BeerNotOwnedException(beerDTO.getName());
+        }
+        if (beerDTO.getQuantity() > beerDTO.getMax()) {
+            throw new BeerStockExceededException(beerDTO.getName(), beerDTO.getQuantity(), beerDTO.getMax());
+        }
+        Beer beer = beerMapper.toModel(beerDTO);
+        Lock lock = ownershipLock.writeLock();
+        lock.lock();
+        try {
+            Optional<Beer> beerWithSameName = beerRepository.findByName(beer.getName());
+            if (beerWithSameName.isPresent()) {
+                if (beerWithSameName.get().getId().equals(beer.getId())) {
+                    return beerMapper.toDTO(beerRepository.save(beer)); //A mesma cerveja de novo: vale a copia de quem entrega;
+                }
+                return mergeDuplicate(beerWithSameName.get(), beer, senderUrl);
+            }
+            if (assignNewId || beer.getId() == null) { //O ID ja e de outra cerveja aqui: a cerveja continua existindo, com um ID desta faixa;
+                Long previousId = beer.getId();
+                beer.setId(null);
+                BeerDTO savedBeer = beerMapper.toDTO(beerRepository.save(beer));
+                log.warn("Beer {} from {} had id {} taken by another beer, stored with id {}",
+                        beer.getName(), senderUrl, previousId, savedBeer.getId());
+                return savedBeer;
+            }
+            if (beerRepository.existsById(beer.getId())) {
+                throw new BeerHandOffConflictException(beer.getId(), beer.getName()); //Nunca sobrescreve outra cerveja;
+            }
+            //O H2 avanca a sequencia da coluna identity quando recebe um ID maior: se veio de outra faixa, volta para a desta instancia;
+            long currentId = jdbcTemplate.queryForObject(CURRENT_ID_QUERY, Long.class);
+            beerRepository.insertWithId(beer.getId(), beer.getName(), beer.getBrand(),
+                    beer.getMax(), beer.getQuantity(), beer.getType().name());
+            if (beer.getId() > currentId && beer.getId() > lastOwnId) {
+                restartIdentityWith(currentId + 1);
+            }
+            return beerDTO;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Cerveja criada duas vezes enquanto o anel mudava: fica a do dono, com o estoque das duas (ate o max);
+    private BeerDTO mergeDuplicate(Beer ownerBeer, Beer handedOffBeer, String senderUrl) {
+        int mergedQuantity = ownerBeer.getQuantity() + handedOffBeer.getQuantity();
+        if (mergedQuantity > ownerBeer.getMax()) {
+            log.warn("Merged stock of beer {} ({}) is above max {}, keeping {}", ownerBeer.getName(), mergedQuantity,
+                    ownerBeer.getMax(), ownerBeer.getMax());
+            mergedQuantity = ownerBeer.getMax();
+        }
+        log.warn("Beer {} from {} with id {} is already registered here with id {}, merging into id {}",
+                ownerBeer.getName(), senderUrl, handedOffBeer.getId(), ownerBeer.getId(), ownerBeer.getId());
+        ownerBeer.setQuantity(mergedQuantity);
+        return beerMapper.toDTO(beerRepository.save(ownerBeer));
+    }
+
+    //Cada instancia gera IDs na sua propria faixa, continuando do maior ID da faixa que ainda existe no cluster;
+    private void reserveIdRange(Set<String> liveNodes) throws IOException {
+        long firstId = clusterProperties.getNodeIndex() * ID_RANGE_PER_NODE + 1;
+        long lastId = firstId + ID_RANGE_PER_NODE - 1;
+        long maxId = findMaxIdBetween(firstId, lastId);
+        for (String node : liveNodes) {
+            if (!node.equals(selfUrl)) {
+                requireDifferentNodeIndex(node); //De novo aqui: as duas instancias podem ter subido ao mesmo tempo;
+                maxId = Math.max(maxId, fetchMaxIdBetween(node, firstId, lastId));
+            }
+        }
+        restartIdentityWith(Math.max(firstId, maxId + 1));
+        lastOwnId = lastId;
+    }
+
+    private void requireDifferentNodeIndex(String node) throws IOException {
+        long nodeIndex = fetchLong(node, INTERNAL_API_PATH + "/node-index");
+        if (nodeIndex == clusterProperties.getNodeIndex()) {
+            throw new IllegalStateException(String.format("beerstock.cluster.node-index=%d is already used by %s.",
+                    nodeIndex, node));
+        }
+    }
+
+    private void restartIdentityWith(long nextId) {
+        jdbcTemplate.execute("ALTER TABLE beer ALTER COLUMN id RESTART WITH " + nextId);
+    }
+
+    private long fetchMaxIdBetween(String node, long firstId, long lastId) throws IOException {
+        return fetchLong(node, String.format("%s/max-id?firstId=%d&lastId=%d", INTERNAL_API_PATH, firstId, lastId));
+    }
+
+    private boolean peersHaveNothingToHandOff() {
+        Set<String> nodes = ring.getNodes();
+        String path = INTERNAL_API_PATH + "/settled?nodes=" + URLEncoder.encode(String.join(",", nodes), StandardCharsets.UTF_8);
+        for (String node : nodes) {
+            try {
+                if (!node.equals(selfUrl) && !Boolean.parseBoolean(fetchString(node, path))) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long fetchLong(String node, String path) throws IOException {
+        return Long.parseLong(fetchString(node, path));
+    }
+
+    private String fetchString(String node, String path) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + path))
+                .timeout(Duration.ofMillis(clusterProperties.getRequestTimeoutMs()))
+                .header(SECRET_HEADER, clusterProperties.getSecret())
+                .GET()
+                .build();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != HttpStatus.OK.value()) {
+                throw new IOException(path + " request to " + node + " failed with status " + response.statusCode());
+            }
+            return response.body().trim();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private void swapRing(ConsistentHashRing newRing) {
+        Lock lock = ownershipLock.writeLock(); //Espera as requisicoes locais em andamento terminarem;
+        lock.lock();
+        try {
+            log.info("Cluster membership changed from {} to {}", ring.getNodes(), newRing.getNodes());
+            ring = newRing;
+            settled = false;
+            handOffPending = true; //Ate a entrega rodar, as outras instancias nao podem contar que nao ha nada aqui;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Depois da troca do anel, as cervejas que mudaram de dono nao sao mais alteradas aqui (o filtro responde 503);
+    private synchronized void handOffMisplacedBeers(boolean leavingCluster) {
+        handingOff = true;
+        handOffPending = false;
+        boolean pending = false;
+        try {
+            ConsistentHashRing currentRing = ring;
+            for (Beer beer : beerRepository.findAll()) {
+                String owner = currentRing.ownerOf(beer.getName());
+                if (owner.equals(selfUrl)) {
+                    continue;
+                }
+                if (handOff(owner, beer, leavingCluster)) {
+                    beerRepository.deleteById(beer.getId());
+                } else {
+                    pending = true; //Mantem a cerveja aqui e tenta de novo no proximo heartbeat;
+                }
+            }
+        } finally {
+            if (pending) {
+                handOffPending = true;
+            }
+            handingOff = false;
+        }
+    }
+
+    private boolean handOff(String owner, Beer beer, boolean leavingCluster) {
+        try {
+            int status = sendHandOff(owner, beer, leavingCluster, false);
+            if (status == HttpStatus.CONFLICT.value()) { //O ID e de outra cerveja no dono: entrega pedindo um ID novo;
+                log.warn("Id {} of beer {} is taken at {}, handing it off with a new id", beer.getId(), beer.getName(), owner);
+                status = sendHandOff(owner, beer, leavingCluster, true);
+            }
+            if (status == HttpStatus.OK.value()) {
+                return true;
+            }
+            log.warn("Hand-off of beer {} to {} failed with status {}", beer.getId(), owner, status);
+        } catch (IOException e) {
+            log.warn("Hand-off of beer {} to {} failed: {}", beer.getId(), owner, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private int sendHandOff(String owner, Beer beer, boolean leavingCluster, boolean assignNewId)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(owner + INTERNAL_API_PATH + "/beers?assignNewId=" + assignNewId))
+                .timeout(Duration.ofMillis(clusterProperties.getRequestTimeoutMs()))
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .header(FORWARDED_HEADER, selfUrl)
+                .header(SECRET_HEADER, clusterProperties.getSecret())
+                .header(LEAVING_HEADER, String.valueOf(leavingCluster))
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(beerMapper.toDTO(beer))))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private boolean isAlive(String node) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(node + INTERNAL_API_PATH + "/ping"))
+                    .timeout(Duration.ofMillis(clusterProperties.getRequestTimeoutMs()))
+                    .header(SECRET_HEADER, clusterProperties.getSecret())
+                    .GET()
+                    .build();
+            return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == HttpStatus.OK.value();
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Set<String> knownNodes() {
+        Set<String> nodes = new TreeSet<>();
+        nodes.add(selfUrl);
+        clusterProperties.getNodes().stream().map(ClusterMembershipService::normalize).forEach(nodes::add);
+        return nodes;
+    }
+
+    private static String normalize(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
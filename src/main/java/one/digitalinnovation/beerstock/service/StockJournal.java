@@ -0,0 +1,242 @@
+package one.digitalinnovation.beerstock.service;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//Log duravel do estoque: cada registro guarda a quantidade final de uma cerveja (o ultimo registro vale);
+//Os registros que chegam juntos sao gravados com um unico fsync (group commit);
+public class StockJournal implements Closeable {
+    private static final String SEGMENT_PREFIX = "stock-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int RECORD_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES; //id, quantidade, crc;
+
+    private final Path directory;
+    private final int maxGroupCommitSize;
+    private final SegmentChannelFactory channelFactory;
+    private final BlockingQueue<PendingRecord> pendingRecords = new LinkedBlockingQueue<>();
+    private final Map<Long, Integer> recoveredQuantities;
+    private final Object segmentLock = new Object();
+    private final Object closeLock = new Object();
+    private final Thread committer;
+    private FileChannel channel;
+    private Path currentSegment;
+    private long segmentNumber;
+    private volatile boolean closed;
+
+    public StockJournal(Path directory, int maxGroupCommitSize) throws IOException {
+        this(directory, maxGroupCommitSize, segment -> FileChannel.open(segment,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    StockJournal(Path directory, int maxGroupCommitSize, SegmentChannelFactory channelFactory) throws IOException {
+        this.directory = directory;
+        this.maxGroupCommitSize = maxGroupCommitSize;
+        this.channelFactory = channelFactory;
+        Files.createDirectories(directory);
+        List<Path> existingSegments = listSegments();
+        this.recoveredQuantities = Collections.unmodifiableMap(readSegments(existingSegments));
+        this.segmentNumber = existingSegments.isEmpty() ? 0 : segmentNumber(existingSegments.get(existingSegments.size() - 1)) + 1;
+        openSegment();
+        this.committer = new Thread(this::commitLoop, "stock-journal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    //Quantidades encontradas no log ao abrir (ainda nao confirmadas na tabela beer);
+    public Map<Long, Integer> getRecoveredQuantities() {
+        return recoveredQuantities;
+    }
+
+    //Retorna somente depois que o registro esta em disco (fsync);
+    public void append(long beerId, int quantity) throws IOException {
+        PendingRecord record = new PendingRecord(beerId, quantity);
+        synchronized (closeLock) { //Garante que o committer ainda vai ver o registro antes de terminar;
+            if (closed) {
+                throw new IOException("Stock journal is closed.");
+            }
+            pendingRecords.add(record);
+        }
+        try {
+            record.durable.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the stock journal.");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not write to the stock journal.", e.getCause());
+        }
+    }
+
+    //Fecha o segmento atual (se tiver registros) e retorna todos os segmentos fechados que ainda estao em disco;
+    public List<Path> sealSegment() throws IOException {
+        synchronized (segmentLock) {
+            if (channel.size() > 0) {
+                channel.close();
+                segmentNumber++;
+                openSegment();
+            }
+            return listSegments().stream()
+                    .filter(segment -> !segment.equals(currentSegment))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    //So pode ser chamado depois que as quantidades desses segmentos foram gravadas na tabela beer;
+    public void deleteSegments(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (closeLock) {
+            closed = true;
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (segmentLock) {
+            channel.close();
+        }
+    }
+
+    private void commitLoop() {
+        List<PendingRecord> batch = new ArrayList<>();
+        while (!closed || !pendingRecords.isEmpty()) {
+            try {
+                PendingRecord first = pendingRecords.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pendingRecords.drainTo(batch, maxGroupCommitSize - 1); //Junta quem chegou enquanto o ultimo fsync rodava;
+                write(batch);
+                batch.forEach(record -> record.durable.complete(null));
+            } catch (IOException e) {
+                batch.forEach(record -> record.durable.completeExceptionally(e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            batch.clear();
+        }
+        IOException closedException = new IOException("Stock journal is closed.");
+        pendingRecords.forEach(record -> record.durable.completeExceptionally(closedException));
+    }
+
+    private void write(List<PendingRecord> batch) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * batch.size());
+        for (PendingRecord record : batch) {
+            buffer.putLong(record.beerId);
+            buffer.putInt(record.quantity);
+            buffer.putInt(checksum(record.beerId, record.quantity));
+        }
+        buffer.flip();
+        synchronized (segmentLock) {
+            long committedSize = channel.size();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                discardFailedWrite(committedSize, e);
+                throw e;
+            }
+        }
+    }
+
+    //O lote que falhou nao foi confirmado: tira os bytes dele do segmento, senao os proximos registros ficariam
+    //depois de um registro quebrado (a leitura para no primeiro CRC invalido) e o lote poderia voltar na reabertura;
+    private void discardFailedWrite(long committedSize, IOException writeFailure) {
+        try {
+            channel.truncate(committedSize);
+            channel.force(false);
+        } catch (IOException e) {
+            writeFailure.addSuppressed(e);
+            try { //Sem conseguir truncar, os proximos registros vao para um segmento novo;
+                channel.close();
+                segmentNumber++;
+                openSegment();
+            } catch (IOException rollFailure) {
+                writeFailure.addSuppressed(rollFailure);
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        currentSegment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+        channel = channelFactory.open(currentSegment);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Map<Long, Integer> readSegments(List<Path> segments) throws IOException {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (Path segment : segments) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+            while (buffer.remaining() >= RECORD_SIZE) {
+                long beerId = buffer.getLong();
+                int quantity = buffer.getInt();
+                if (buffer.getInt() != checksum(beerId, quantity)) {
+                    break; //Registro incompleto no fim do arquivo (queda no meio da escrita);
+                }
+                quantities.put(beerId, quantity);
+            }
+        }
+        return quantities;
+    }
+
+    private static long segmentNumber(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(long beerId, int quantity) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(beerId).putInt(quantity).array());
+        return (int) crc.getValue();
+    }
+
+    interface SegmentChannelFactory {
+        FileChannel open(Path segment) throws IOException;
+    }
+
+    private static class PendingRecord {
+        private final long beerId;
+        private final int quantity;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        PendingRecord(long beerId, int quantity) {
+            this.beerId = beerId;
+            this.quantity = quantity;
+        }
+    }
+}
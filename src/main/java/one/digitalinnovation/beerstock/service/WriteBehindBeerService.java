@@ -0,0 +1,213 @@
+package one.digitalinnovation.beerstock.service;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+//Estoque com write-behind: o increment vale apos o registro no StockJournal, e a tabela beer e atualizada em lote depois;
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(prefix = "beerstock.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindBeerService extends BeerService {
+    private static final String UPDATE_QUANTITY_SQL = "UPDATE beer SET quantity = ? WHERE id = ?";
+
+    private final BeerRepository beerRepository;
+    private final StockJournal stockJournal;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+    private final Map<Long, Beer> stock = new ConcurrentHashMap<>(); //Estado oficial do estoque das cervejas ja incrementadas;
+    private final Set<Long> dirtyBeerIds = ConcurrentHashMap.newKeySet(); //Cervejas com quantidade ainda nao gravada na tabela;
+    //Cervejas apagadas (ou sendo apagadas): o increment nao pode recarregar a linha antes do commit do delete; IDs nao sao reusados;
+    private final Set<Long> deletedBeerIds = ConcurrentHashMap.newKeySet();
+
+    public WriteBehindBeerService(BeerRepository beerRepository, StockJournal stockJournal,
+                                  JdbcTemplate jdbcTemplate, TransactionOperations transactionOperations) {
+        super(beerRepository);
+        this.beerRepository = beerRepository;
+        this.stockJournal = stockJournal;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+    }
+
+    @PostConstruct
+    public void recover() throws IOException { //Regrava na tabela o que ficou so no log depois de uma queda;
+        List<Path> recoveredSegments = stockJournal.sealSegment();
+        Map<Long, Integer> recoveredQuantities = stockJournal.getRecoveredQuantities();
+        if (!recoveredQuantities.isEmpty()) {
+            log.info("Recovering {} stock quantities from the stock journal", recoveredQuantities.size());
+            writeQuantities(recoveredQuantities.entrySet().stream()
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                    .collect(Collectors.toList()));
+        }
+        stockJournal.deleteSegments(recoveredSegments);
+    }
+
+    @Override
+    public BeerDTO findByName(String name) throws BeerNotFoundException {
+        return withCurrentQuantity(super.findByName(name));
+    }
+
+    @Override
+    public List<BeerDTO> listAll() {
+        return super.listAll().stream()
+                .map(this::withCurrentQuantity)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void deleteById(Long id) throws BeerNotFoundException {
+        deletedBeerIds.add(id);
+        boolean deleted = false;
+        try {
+            super.deleteById(id);
+            deleted = true;
+        } finally {
+            if (!deleted) {
+                deletedBeerIds.remove(id);
+            }
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(id);
+            return;
+        }
+        //A cerveja so sai da memoria depois do commit; se o delete voltar atras, o estoque em memoria continua valendo;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    evict(id);
+                } else {
+                    deletedBeerIds.remove(id);
+                }
+            }
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) //A cerveja em memoria nao pode ficar gerenciada pelo Hibernate, senao o commit grava direto;
+    public BeerDTO increment(Long id, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException {
+        Beer beerToIncrementStock = loadStock(id);
+        synchronized (beerToIncrementStock) { //Um increment por vez para cada cerveja, o limite max nunca e ultrapassado;
+            if (stock.get(id) != beerToIncrementStock || deletedBeerIds.contains(id)) {
+                throw new BeerNotFoundException(id); //Removida enquanto esperava;
+            }
+            int quantityAfterIncrement = quantityToIncrement + beerToIncrementStock.getQuantity();
+            if (quantityAfterIncrement > beerToIncrementStock.getMax()) {
+                throw new BeerStockExceededException(id, quantityToIncrement);
+            }
+            dirtyBeerIds.add(id); //Antes do log: o flush que fechar o segmento deste registro tem que ver a cerveja;
+            try {
+                stockJournal.append(id, quantityAfterIncrement);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            beerToIncrementStock.setQuantity(quantityAfterIncrement);
+            return beerMapper.toDTO(beerToIncrementStock);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${beerstock.write-behind.flush-interval-ms:200}")
+    public synchronized void flush() {
+        try {
+            List<Path> sealedSegments = stockJournal.sealSegment();
+            List<Long> flushedBeerIds = new ArrayList<>();
+            List<Object[]> quantities = new ArrayList<>();
+            for (Iterator<Long> it = dirtyBeerIds.iterator(); it.hasNext(); ) {
+                Long id = it.next();
+                it.remove();
+                Beer beer = stock.get(id);
+                if (beer != null) {
+                    synchronized (beer) { //Espera o increment em andamento terminar;
+                        quantities.add(new Object[]{beer.getQuantity(), id});
+                    }
+                    flushedBeerIds.add(id);
+                }
+            }
+            try {
+                writeQuantities(quantities);
+            } catch (RuntimeException e) {
+                dirtyBeerIds.addAll(flushedBeerIds); //Segmentos ficam no disco e o lote e tentado de novo;
+                throw e;
+            }
+            stockJournal.deleteSegments(sealedSegments);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not flush stock to the database: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void writeQuantities(List<Object[]> quantities) {
+        if (!quantities.isEmpty()) {
+            transactionOperations.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_QUANTITY_SQL, quantities));
+        }
+    }
+
+    private Beer loadStock(Long id) throws BeerNotFoundException {
+        Beer beer = stock.get(id);
+        if (beer != null) {
+            return beer;
+        }
+        if (deletedBeerIds.contains(id)) {
+            throw new BeerNotFoundException(id);
+        }
+        Beer loadedBeer = beerRepository.findById(id)
+                .orElseThrow(() -> new BeerNotFoundException(id));
+        Beer currentBeer = stock.putIfAbsent(id, loadedBeer);
+        if (currentBeer == null && deletedBeerIds.contains(id)) { //Leu a linha antes do delete: nao deixa a copia velha na memoria;
+            stock.remove(id, loadedBeer);
+            throw new BeerNotFoundException(id);
+        }
+        return currentBeer != null ? currentBeer : loadedBeer;
+    }
+
+    private void evict(Long id) {
+        Beer beer = stock.get(id);
+        if (beer != null) {
+            synchronized (beer) { //Espera o increment em andamento terminar;
+                stock.remove(id);
+                dirtyBeerIds.remove(id);
+            }
+        }
+    }
+
+    private BeerDTO withCurrentQuantity(BeerDTO beerDTO) {
+        Beer beer = stock.get(beerDTO.getId());
+        if (beer != null) {
+            synchronized (beer) {
+                beerDTO.setQuantity(beer.getQuantity());
+            }
+        }
+        return beerDTO;
+    }
+}
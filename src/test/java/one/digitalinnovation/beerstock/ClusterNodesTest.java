@@ -0,0 +1,527 @@
+package one.digitalinnovation.beerstock;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.NestedExceptionUtils;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//Sobe varias instancias da aplicacao na mesma JVM para testar o modo multi-node;
+public class ClusterNodesTest {
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+    private static final String PING_URL_PATH = "/internal/v1/cluster/ping";
+    private static final String SETTLED_URL_PATH = "/internal/v1/cluster/settled";
+    private static final int BEERS = 12;
+    private static final long MEMBERSHIP_TIMEOUT_MS = 15_000;
+    private static final String CLUSTER_SECRET = System.getProperty("beerstock.cluster.secret", "test-secret");
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<ConfigurableApplicationContext> runningNodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        runningNodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test //Teste: cerveja criada em uma instancia e encontrada a partir de qualquer instancia;
+    void whenBeersAreCreatedOnOneNodeThenTheyAreFoundFromEveryNode() throws Exception {
+        List<String> nodes = clusterUrls(3);
+        nodes.forEach(node -> startNode(node, nodes));
+        awaitMembership(nodes, nodes.size());
+
+        List<BeerDTO> createdBeers = createBeers(nodes.get(0), BEERS);
+
+        for (String node : nodes) {
+            for (BeerDTO beer : createdBeers) {
+                HttpResponse<String> response = send(node, "GET", BEER_API_URL_PATH + "/" + beer.getName(), null);
+                MatcherAssert.assertThat(response.statusCode(), is(200));
+                MatcherAssert.assertThat(objectMapper.readValue(response.body(), BeerDTO.class).getId(), is(equalTo(beer.getId())));
+            }
+            BeerDTO[] listedBeers = objectMapper.readValue(send(node, "GET", BEER_API_URL_PATH, null).body(), BeerDTO[].class);
+            MatcherAssert.assertThat(listedBeers.length, is(BEERS));
+        }
+    }
+
+    @Test //Teste: incremento enviado para qualquer instancia chega na dona da cerveja;
+    void whenIncrementIsSentToAnyNodeThenTheOwnerStockIsUpdated() throws Exception {
+        List<String> nodes = clusterUrls(2);
+        nodes.forEach(node -> startNode(node, nodes));
+        awaitMembership(nodes, nodes.size());
+        BeerDTO beer = createBeers(nodes.get(0), 1).get(0);
+
+        for (String node : nodes) {
+            HttpResponse<String> response = send(node, "PATCH", BEER_API_URL_PATH + "/" + beer.getId() + "/increment",
+                    QuantityDTO.builder().quantity(5).build());
+            MatcherAssert.assertThat(response.statusCode(), is(200));
+        }
+
+        BeerDTO incrementedBeer = objectMapper.readValue(
+                send(nodes.get(1), "GET", BEER_API_URL_PATH + "/" + beer.getName(), null).body(), BeerDTO.class);
+        MatcherAssert.assertThat(incrementedBeer.getQuantity(), is(beer.getQuantity() + 10));
+    }
+
+    @Test //Teste: quando instancias entram e saem, as cervejas mudam de dono sem se perder;
+    void whenNodesJoinAndLeaveThenBeersAreRebalanced() throws Exception {
+        List<String> nodes = clusterUrls(2);
+        startNode(nodes.get(0), nodes);
+        awaitMembership(nodes.subList(0, 1), 1);
+        List<BeerDTO> createdBeers = createBeers(nodes.get(0), BEERS);
+
+        ConfigurableApplicationContext joiningNode = startNode(nodes.get(1), nodes);
+        awaitMembership(nodes, nodes.size());
+        BeerDTO[] beersOnJoiningNode = objectMapper.readValue(
+                sendForwarded(nodes.get(1), BEER_API_URL_PATH).body(), BeerDTO[].class);
+        MatcherAssert.assertThat(beersOnJoiningNode.length, is(both(greaterThan(0)).and(lessThan(BEERS))));
+
+        joiningNode.close();
+        runningNodes.remove(joiningNode);
+        awaitMembership(nodes.subList(0, 1), 1);
+
+        for (BeerDTO beer : createdBeers) {
+            HttpResponse<String> response = send(nodes.get(0), "GET", BEER_API_URL_PATH + "/" + beer.getName(), null);
+            MatcherAssert.assertThat(response.statusCode(), is(200));
+            MatcherAssert.assertThat(objectMapper.readValue(response.body(), BeerDTO.class).getId(), is(equalTo(beer.getId())));
+        }
+    }
+
+    @Test //Teste: enquanto a instancia antiga ainda nao entregou as cervejas, a nova dona procura nela (sem 404 nem duplicadas);
+    void whenNodeJoinsBeforeHandOffThenBeersAreFoundOnThePreviousOwner() throws Exception {
+        List<String> nodes = clusterUrls(2);
+        startNode(nodes.get(0), nodes, 0, 10_000); //Demora a ver a nova instancia: a entrega fica para depois;
+        awaitMembership(nodes.subList(0, 1), 1);
+        List<BeerDTO> createdBeers = createBeers(nodes.get(0), BEERS);
+
+        startNode(nodes.get(1), nodes);
+        long deadline = System.currentTimeMillis() + MEMBERSHIP_TIMEOUT_MS;
+        while (liveNodesSeenBy(nodes.get(1)) != nodes.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        BeerDTO[] beersOnPreviousOwner = objectMapper.readValue(
+                sendForwarded(nodes.get(0), BEER_API_URL_PATH).body(), BeerDTO[].class);
+        MatcherAssert.assertThat(beersOnPreviousOwner.length, is(BEERS)); //Ainda na janela antes da entrega;
+
+        for (BeerDTO beer : createdBeers) {
+            HttpResponse<String> response = send(nodes.get(1), "GET", BEER_API_URL_PATH + "/" + beer.getName(), null);
+            MatcherAssert.assertThat(response.statusCode(), is(200));
+            MatcherAssert.assertThat(objectMapper.readValue(response.body(), BeerDTO.class).getId(), is(equalTo(beer.getId())));
+            BeerDTO duplicateBeer = BeerDTOBuilder.builder().id(null).name(beer.getName()).build().toBeerDTO();
+            MatcherAssert.assertThat(send(nodes.get(1), "POST", BEER_API_URL_PATH, duplicateBeer).statusCode(), is(400));
+        }
+
+        awaitMembership(nodes, nodes.size());
+        BeerDTO[] listedBeers = objectMapper.readValue(send(nodes.get(1), "GET", BEER_API_URL_PATH, null).body(), BeerDTO[].class);
+        MatcherAssert.assertThat(Arrays.stream(listedBeers).map(BeerDTO::getName).distinct().count(), is((long) BEERS));
+        MatcherAssert.assertThat(listedBeers.length, is(BEERS));
+    }
+
+    @Test //Teste: instancia que responde com erro gera 503, nunca uma lista parcial ou um 404 errado;
+    void whenPeerFailsThenListAndUpdateByIdAreUnavailable() throws Exception {
+        HttpServer failingPeer = startFailingPeer();
+        try {
+            List<String> nodes = List.of(clusterUrls(1).get(0), "http://localhost:" + failingPeer.getAddress().getPort());
+            startNode(nodes.get(0), nodes, 0);
+            long deadline = System.currentTimeMillis() + MEMBERSHIP_TIMEOUT_MS;
+            while (liveNodesSeenBy(nodes.get(0)) != nodes.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+
+            MatcherAssert.assertThat(send(nodes.get(0), "GET", BEER_API_URL_PATH, null).statusCode(), is(503));
+            MatcherAssert.assertThat(send(nodes.get(0), "PATCH", BEER_API_URL_PATH + "/999/increment",
+                    QuantityDTO.builder().quantity(1).build()).statusCode(), is(503));
+        } finally {
+            failingPeer.stop(0);
+        }
+    }
+
+    @Test //Teste: instancia reiniciada continua a faixa de IDs, sem repetir IDs que ainda existem em outra instancia;
+    void whenNodeRestartsThenItDoesNotReuseIdsStillInTheCluster() throws Exception {
+        List<String> nodes = clusterUrls(2);
+        nodes.forEach(node -> startNode(node, nodes));
+        awaitMembership(nodes, nodes.size());
+        List<BeerDTO> createdBeers = createBeers(nodes.get(0), BEERS);
+
+        ConfigurableApplicationContext restartingNode = runningNodes.get(1);
+        restartingNode.close();
+        runningNodes.remove(restartingNode);
+        awaitMembership(nodes.subList(0, 1), 1);
+        startNode(nodes.get(1), nodes);
+        awaitMembership(nodes, nodes.size());
+
+        List<BeerDTO> allBeers = new ArrayList<>(createdBeers);
+        for (int i = 0; i < BEERS; i++) {
+            BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name("After-restart-" + i).build().toBeerDTO();
+            HttpResponse<String> response = send(nodes.get(1), "POST", BEER_API_URL_PATH, beerDTO);
+            MatcherAssert.assertThat(response.statusCode(), is(201));
+            allBeers.add(objectMapper.readValue(response.body(), BeerDTO.class));
+        }
+
+        MatcherAssert.assertThat(allBeers.stream().map(BeerDTO::getId).distinct().count(), is((long) allBeers.size()));
+        for (BeerDTO beer : allBeers) {
+            BeerDTO foundBeer = objectMapper.readValue(
+                    send(nodes.get(0), "GET", BEER_API_URL_PATH + "/" + beer.getName(), null).body(), BeerDTO.class);
+            MatcherAssert.assertThat(foundBeer.getId(), is(equalTo(beer.getId())));
+        }
+    }
+
+    @Test //Teste: instancia com a faixa de IDs de outra instancia no ar nao sobe;
+    void whenNodeIndexIsAlreadyUsedByLiveNodeThenNodeDoesNotStart() throws Exception {
+        List<String> nodes = clusterUrls(2);
+        startNode(nodes.get(0), nodes);
+        awaitMembership(nodes.subList(0, 1), 1);
+
+        Exception exception = assertThrows(Exception.class, () -> startNode(nodes.get(1), nodes, 0));
+        MatcherAssert.assertThat(NestedExceptionUtils.getMostSpecificCause(exception).getMessage(),
+                containsString("node-index=0 is already used by " + nodes.get(0)));
+    }
+
+    @Test //Teste: hand-off com o ID de outra cerveja e recusado, sem sobrescrever, e aceito com um ID novo;
+    void whenHandOffIdBelongsToAnotherBeerThenItIsStoredWithNewId() throws Exception {
+        List<String> nodes = clusterUrls(1);
+        startNode(nodes.get(0), nodes);
+        awaitMembership(nodes, 1);
+        BeerDTO beer = createBeers(nodes.get(0), 1).get(0);
+
+        BeerDTO conflictingBeer = BeerDTOBuilder.builder().id(beer.getId()).name("Another beer").build().toBeerDTO();
+        MatcherAssert.assertThat(handOff(nodes.get(0), conflictingBeer, false).statusCode(), is(409));
+        MatcherAssert.assertThat(send(nodes.get(0), "GET", BEER_API_URL_PATH + "/" + beer.getName(), null).statusCode(), is(200));
+
+        HttpResponse<String> response = handOff(nodes.get(0), conflictingBeer, true);
+        MatcherAssert.assertThat(response.statusCode(), is(200));
+        MatcherAssert.assertThat(objectMapper.readValue(response.body(), BeerDTO.class).getId(), is(not(equalTo(beer.getId()))));
+        MatcherAssert.assertThat(send(nodes.get(0), "GET", BEER_API_URL_PATH + "/" + beer.getName(), null).statusCode(), is(200));
+        MatcherAssert.assertThat(send(nodes.get(0), "GET", BEER_API_URL_PATH + "/Another%20beer", null).statusCode(), is(200));
+    }
+
+    @Test //Teste: sem o segredo do cluster, a API interna recusa e o cabecalho de encaminhamento e ignorado;
+    void whenClusterSecretIsMissingThenInternalApiIsForbidden() throws Exception {
+        List<String> nodes = clusterUrls(2);
+        nodes.forEach(node -> startNode(node, nodes));
+        awaitMembership(nodes, nodes.size());
+        createBeers(nodes.get(0), BEERS);
+
+        BeerDTO beer = BeerDTOBuilder.builder().id(1L).name("Injected").build().toBeerDTO();
+        HttpResponse<String> response = execute(HttpRequest.newBuilder(URI.create(nodes.get(0) + "/internal/v1/cluster/beers"))
+                .header("Content-Type", "application/json")
+                .header("X-Beerstock-Forwarded", "http://localhost:1")
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(beer)))
+                .build());
+        MatcherAssert.assertThat(response.statusCode(), is(403));
+        MatcherAssert.assertThat(send(nodes.get(0), "GET", PING_URL_PATH, null).statusCode(), is(403));
+
+        BeerDTO[] listedBeers = objectMapper.readValue(execute(HttpRequest.newBuilder(URI.create(nodes.get(0) + BEER_API_URL_PATH))
+                .header("X-Beerstock-Forwarded", "test").GET().build()).body(), BeerDTO[].class);
+        MatcherAssert.assertThat(listedBeers.length, is(BEERS)); //Roteada como a de um cliente: lista o cluster todo;
+    }
+
+    @Test //Teste: hand-off invalido ou com estoque acima do max e recusado;
+    void whenHandOffIsInvalidThenItIsRejected() throws Exception {
+        List<String> nodes = clusterUrls(1);
+        startNode(nodes.get(0), nodes);
+        awaitMembership(nodes, 1);
+
+        BeerDTO overfilledBeer = BeerDTOBuilder.builder().id(1L).name("Overfilled").max(10).quantity(50).build().toBeerDTO();
+        MatcherAssert.assertThat(handOff(nodes.get(0), overfilledBeer, false).statusCode(), is(400));
+        BeerDTO beerWithoutBrand = BeerDTOBuilder.builder().id(2L).name("Without brand").brand(null).build().toBeerDTO();
+        MatcherAssert.assertThat(handOff(nodes.get(0), beerWithoutBrand, false).statusCode(), is(400));
+        MatcherAssert.assertThat(send(nodes.get(0), "GET", BEER_API_URL_PATH + "/Overfilled", null).statusCode(), is(404));
+    }
+
+    @Test //Teste: cerveja criada duas vezes durante a troca do anel vira uma so, com o estoque das duas ate o max;
+    void whenHandOffNameIsAlreadyRegisteredThenStocksAreMerged() throws Exception {
+        List<String> nodes = clusterUrls(1);
+        startNode(nodes.get(0), nodes);
+        awaitMembership(nodes, 1);
+        BeerDTO beer = createBeers(nodes.get(0), 1).get(0);
+
+        BeerDTO duplicateBeer = BeerDTOBuilder.builder().id(beer.getId() + 1_000).name(beer.getName()).build().toBeerDTO();
+        HttpResponse<String> response = handOff(nodes.get(0), duplicateBeer, false);
+
+        MatcherAssert.assertThat(response.statusCode(), is(200));
+        BeerDTO mergedBeer = objectMapper.readValue(response.body(), BeerDTO.class);
+        MatcherAssert.assertThat(mergedBeer.getId(), is(equalTo(beer.getId())));
+        MatcherAssert.assertThat(mergedBeer.getQuantity(), is(Math.min(beer.getMax(), beer.getQuantity() + duplicateBeer.getQuantity())));
+    }
+
+    @Test //Teste: increments durante a entrada de uma instancia nao se perdem (no maximo recebem 503 e nao contam);
+    void whenNodeJoinsDuringIncrementsThenNoAcknowledgedIncrementIsLost() throws Exception {
+        List<String> nodes = clusterUrls(2);
+        startNode(nodes.get(0), nodes);
+        awaitMembership(nodes.subList(0, 1), 1);
+        List<BeerDTO> createdBeers = new ArrayList<>();
+        for (int i = 0; i < BEERS; i++) {
+            BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name("Joining-" + i).max(500).quantity(0).build().toBeerDTO();
+            createdBeers.add(objectMapper.readValue(send(nodes.get(0), "POST", BEER_API_URL_PATH, beerDTO).body(), BeerDTO.class));
+        }
+        AtomicLong acknowledgedIncrements = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.execute(() -> { //Cada thread usa as suas cervejas: o increment sincrono nao protege escritas concorrentes na mesma cerveja;
+                for (int i = thread; running.get(); i = (i + threads) % BEERS) {
+                    BeerDTO beer = createdBeers.get(i);
+                    try {
+                        if (send(nodes.get(0), "PATCH", BEER_API_URL_PATH + "/" + beer.getId() + "/increment",
+                                QuantityDTO.builder().quantity(1).build()).statusCode() == 200) {
+                            acknowledgedIncrements.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+
+        startNode(nodes.get(1), nodes);
+        awaitMembership(nodes, nodes.size());
+        running.set(false);
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        BeerDTO[] listedBeers = objectMapper.readValue(send(nodes.get(1), "GET", BEER_API_URL_PATH, null).body(), BeerDTO[].class);
+        int initialStock = createdBeers.stream().mapToInt(BeerDTO::getQuantity).sum();
+        int finalStock = Arrays.stream(listedBeers).mapToInt(BeerDTO::getQuantity).sum();
+        MatcherAssert.assertThat((long) (finalStock - initialStock), is(acknowledgedIncrements.get()));
+    }
+
+    //Benchmark de escalabilidade: mvn test -Dtest=ClusterNodesTest -Dbeerstock.benchmark=true
+    //As instancias rodam na mesma JVM (dividem CPU e heap); para processos separados, veja o README e use -Dbeerstock.benchmark.nodes;
+    @Test
+    @EnabledIfSystemProperty(named = "beerstock.benchmark", matches = "true")
+    void throughputWithOneTwoAndFourNodes() throws Exception {
+        List<String> results = new ArrayList<>();
+        String externalNodes = System.getProperty("beerstock.benchmark.nodes");
+        if (externalNodes != null) {
+            List<String> nodes = Arrays.asList(externalNodes.split(","));
+            awaitMembership(nodes, nodes.size());
+            results.add(runBenchmark(nodes));
+        } else {
+            for (int clusterSize : new int[]{1, 2, 4}) {
+                List<String> nodes = clusterUrls(clusterSize);
+                nodes.forEach(node -> startNode(node, nodes));
+                awaitMembership(nodes, clusterSize);
+                results.add(runBenchmark(nodes));
+                tearDown();
+                runningNodes.clear();
+            }
+        }
+
+        System.out.printf("%5s %10s %10s %10s %10s %10s%n", "nodes", "total/s", "get/s", "incr/s", "create/s", "errors");
+        results.forEach(System.out::println);
+    }
+
+    private String runBenchmark(List<String> nodes) throws Exception {
+        String prefix = "Bench-" + System.nanoTime() + "-";
+        List<BeerDTO> beers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name(prefix + i).max(500).quantity(0).build().toBeerDTO();
+            HttpResponse<String> response = send(nodes.get(i % nodes.size()), "POST", BEER_API_URL_PATH, beerDTO);
+            MatcherAssert.assertThat(response.statusCode(), is(201));
+            beers.add(objectMapper.readValue(response.body(), BeerDTO.class));
+        }
+        long durationMs = 5_000;
+        long[] completed = measureThroughput(nodes, beers, prefix, 16, durationMs);
+        long total = completed[0] + completed[1] + completed[2];
+        MatcherAssert.assertThat(completed[0], is(greaterThan(0L)));
+        MatcherAssert.assertThat(completed[1], is(greaterThan(0L)));
+        MatcherAssert.assertThat(completed[2], is(greaterThan(0L)));
+        MatcherAssert.assertThat(completed[3], is(0L)); //Nenhuma resposta fora de 2xx com o anel estavel;
+        return String.format("%5d %10d %10d %10d %10d %10d", nodes.size(), total * 1000 / durationMs,
+                completed[0] * 1000 / durationMs, completed[1] * 1000 / durationMs, completed[2] * 1000 / durationMs, completed[3]);
+    }
+
+    //Mistura de operacoes: 70% GET por nome, 20% increment e 10% criacao; retorna {get, increment, create, erros};
+    private long[] measureThroughput(List<String> nodes, List<BeerDTO> beers, String prefix, int threads, long durationMs)
+            throws InterruptedException {
+        AtomicLong[] completedRequests = {new AtomicLong(), new AtomicLong(), new AtomicLong(), new AtomicLong()};
+        AtomicLong createdBeers = new AtomicLong(beers.size());
+        long deadline = System.currentTimeMillis() + durationMs;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.currentTimeMillis() < deadline) {
+                    String node = nodes.get(random.nextInt(nodes.size()));
+                    BeerDTO beer = beers.get(random.nextInt(beers.size()));
+                    int operation = random.nextInt(100);
+                    try {
+                        HttpResponse<String> response;
+                        int kind;
+                        if (operation < 70) {
+                            kind = 0;
+                            response = send(node, "GET", BEER_API_URL_PATH + "/" + beer.getName(), null);
+                        } else if (operation < 90) {
+                            kind = 1;
+                            response = send(node, "PATCH", BEER_API_URL_PATH + "/" + beer.getId() + "/increment",
+                                    QuantityDTO.builder().quantity(1).build());
+                        } else {
+                            kind = 2;
+                            BeerDTO newBeer = BeerDTOBuilder.builder().id(null)
+                                    .name(prefix + createdBeers.getAndIncrement()).build().toBeerDTO();
+                            response = send(node, "POST", BEER_API_URL_PATH, newBeer);
+                        }
+                        completedRequests[response.statusCode() / 100 == 2 ? kind : 3].incrementAndGet();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(durationMs + 10_000, TimeUnit.MILLISECONDS);
+        return Arrays.stream(completedRequests).mapToLong(AtomicLong::get).toArray();
+    }
+
+    //Responde como uma instancia viva no heartbeat, mas com 500 na API de cervejas;
+    private static HttpServer startFailingPeer() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String body = path.endsWith("/ping") ? "[]" : path.endsWith("/node-index") ? "99"
+                    : path.endsWith("/max-id") ? "0" : path.endsWith("/settled") ? "true" : null;
+            byte[] bytes = body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            exchange.sendResponseHeaders(body != null ? 200 : 500, bytes.length > 0 ? bytes.length : -1);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private List<BeerDTO> createBeers(String node, int count) throws IOException {
+        List<BeerDTO> createdBeers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name("Beer-" + i).build().toBeerDTO();
+            HttpResponse<String> response = send(node, "POST", BEER_API_URL_PATH, beerDTO);
+            MatcherAssert.assertThat(response.statusCode(), is(201));
+            createdBeers.add(objectMapper.readValue(response.body(), BeerDTO.class));
+        }
+        return createdBeers;
+    }
+
+    private ConfigurableApplicationContext startNode(String selfUrl, List<String> nodes) {
+        return startNode(selfUrl, nodes, nodes.indexOf(selfUrl)); //A instancia i gera IDs na faixa i;
+    }
+
+    private ConfigurableApplicationContext startNode(String selfUrl, List<String> nodes, int nodeIndex) {
+        return startNode(selfUrl, nodes, nodeIndex, 200);
+    }
+
+    private ConfigurableApplicationContext startNode(String selfUrl, List<String> nodes, int nodeIndex, long heartbeatIntervalMs) {
+        int port = URI.create(selfUrl).getPort();
+        //Argumentos de linha de comando: tem precedencia sobre o application.properties (properties() seriam so padroes);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BeerstockApplication.class).run(
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:beerstock-" + port + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--spring.jmx.enabled=false",
+                "--spring.devtools.restart.enabled=false",
+                "--spring.devtools.livereload.enabled=false",
+                "--beerstock.cluster.enabled=true",
+                "--beerstock.cluster.self-url=" + selfUrl,
+                "--beerstock.cluster.node-index=" + nodeIndex,
+                "--beerstock.cluster.secret=" + CLUSTER_SECRET,
+                "--beerstock.cluster.nodes=" + String.join(",", nodes),
+                "--beerstock.cluster.heartbeat-interval-ms=" + heartbeatIntervalMs);
+        runningNodes.add(context);
+        return context;
+    }
+
+    private void awaitMembership(List<String> nodes, int expectedSize) throws Exception {
+        long deadline = System.currentTimeMillis() + MEMBERSHIP_TIMEOUT_MS;
+        for (String node : nodes) {
+            while (liveNodesSeenBy(node) != expectedSize) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Cluster membership did not converge on " + node);
+                }
+                Thread.sleep(100);
+            }
+        }
+        String settledPath = SETTLED_URL_PATH + "?nodes=" + String.join(",", nodes);
+        for (String node : nodes) { //Espera a entrega das cervejas que mudaram de dono;
+            while (!"true".equals(sendInternal(node, settledPath).body())) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Hand-off did not finish on " + node);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private int liveNodesSeenBy(String node) throws IOException {
+        HttpResponse<String> response = sendInternal(node, PING_URL_PATH);
+        return response.statusCode() == 200 ? objectMapper.readValue(response.body(), String[].class).length : 0;
+    }
+
+    private HttpResponse<String> send(String node, String method, String path, Object body) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(node + path))
+                .header("Content-Type", "application/json")
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        return execute(request.build());
+    }
+
+    private HttpResponse<String> sendForwarded(String node, String path) throws IOException { //Consulta so os dados locais da instancia;
+        return execute(HttpRequest.newBuilder(URI.create(node + path)).header("X-Beerstock-Forwarded", "test")
+                .header("X-Beerstock-Cluster-Secret", CLUSTER_SECRET).GET().build());
+    }
+
+    private HttpResponse<String> sendInternal(String node, String path) throws IOException {
+        return execute(HttpRequest.newBuilder(URI.create(node + path)).header("X-Beerstock-Cluster-Secret", CLUSTER_SECRET).GET().build());
+    }
+
+    private HttpResponse<String> handOff(String node, BeerDTO beer, boolean assignNewId) throws IOException {
+        return execute(HttpRequest.newBuilder(URI.create(node + "/internal/v1/cluster/beers?assignNewId=" + assignNewId))
+                .header("Content-Type", "application/json")
+                .header("X-Beerstock-Forwarded", "http://localhost:1")
+                .header("X-Beerstock-Cluster-Secret", CLUSTER_SECRET)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(beer)))
+                .build());
+    }
+
+    private HttpResponse<String> execute(HttpRequest request) throws IOException {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static List<String> clusterUrls(int size) throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                urls.add("http://localhost:" + socket.getLocalPort());
+            }
+        }
+        return urls;
+    }
+}
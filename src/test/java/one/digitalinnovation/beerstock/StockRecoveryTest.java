@@ -0,0 +1,80 @@
+package one.digitalinnovation.beerstock;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.service.StockJournal;
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.NestedExceptionUtils;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//Sobe a aplicacao com write-behind em um H2 em arquivo e reinicia sem o flush, como depois de uma queda;
+public class StockRecoveryTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    @Test //Teste: increment que so esta no log volta para a tabela beer quando a aplicacao sobe de novo;
+    void whenApplicationRestartsWithoutFlushThenJournaledStockIsRecovered() throws Exception {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).max(50).quantity(10).build().toBeerDTO();
+        try (ConfigurableApplicationContext context = start(fileUrl(), "update")) {
+            BeerService beerService = context.getBean(BeerService.class);
+            BeerDTO createdBeer = beerService.createBeer(beerDTO);
+            beerService.increment(createdBeer.getId(), 15);
+            context.getBean(StockJournal.class).close(); //Queda: o flush do desligamento nao consegue gravar nada;
+        }
+
+        try (ConfigurableApplicationContext context = start(fileUrl(), "update")) {
+            BeerDTO recoveredBeer = context.getBean(BeerService.class).findByName(beerDTO.getName());
+            MatcherAssert.assertThat(recoveredBeer.getQuantity(), is(equalTo(25)));
+        }
+    }
+
+    @Test //Teste: write-behind com BD em memoria nao sobe;
+    void whenDatabaseIsInMemoryThenApplicationDoesNotStart() {
+        Exception exception = assertThrows(Exception.class,
+                () -> start("jdbc:h2:mem:recovery;DB_CLOSE_DELAY=-1", "update").close());
+        MatcherAssert.assertThat(NestedExceptionUtils.getMostSpecificCause(exception).getMessage(), containsString("durable database"));
+    }
+
+    @Test //Teste: write-behind com ddl-auto que recria o schema nao sobe;
+    void whenDdlAutoRecreatesSchemaThenApplicationDoesNotStart() {
+        Exception exception = assertThrows(Exception.class, () -> start(fileUrl(), "create-drop").close());
+        MatcherAssert.assertThat(NestedExceptionUtils.getMostSpecificCause(exception).getMessage(), containsString("ddl-auto=create-drop"));
+    }
+
+    @Test //Teste: write-behind junto com o modo cluster nao sobe;
+    void whenClusterModeIsEnabledThenApplicationDoesNotStart() {
+        Exception exception = assertThrows(Exception.class, () -> start(fileUrl(), "update",
+                "--beerstock.cluster.enabled=true", "--beerstock.cluster.self-url=http://localhost:1",
+                "--beerstock.cluster.node-index=0", "--beerstock.cluster.secret=test-secret").close());
+        MatcherAssert.assertThat(NestedExceptionUtils.getMostSpecificCause(exception).getMessage(),
+                containsString("cannot be combined with beerstock.cluster.enabled"));
+    }
+
+    private String fileUrl() {
+        return "jdbc:h2:file:" + dataDirectory.resolve("beerstock") + ";DB_CLOSE_ON_EXIT=FALSE";
+    }
+
+    private ConfigurableApplicationContext start(String datasourceUrl, String ddlAuto, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + datasourceUrl,
+                "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                "--spring.jmx.enabled=false",
+                "--spring.devtools.restart.enabled=false",
+                "--spring.devtools.livereload.enabled=false",
+                "--beerstock.write-behind.enabled=true",
+                "--beerstock.write-behind.journal-directory=" + dataDirectory.resolve("stock-journal"),
+                "--beerstock.write-behind.flush-interval-ms=3600000")); //So o flush do desligamento;
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(BeerstockApplication.class).run(args.toArray(new String[0]));
+    }
+}
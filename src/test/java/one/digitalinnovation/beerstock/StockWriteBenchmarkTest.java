@@ -0,0 +1,95 @@
+package one.digitalinnovation.beerstock;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.service.WriteBehindBeerService;
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.hamcrest.Matchers.*;
+
+//Compara o increment sincrono com o write-behind: mvn test -Dtest=StockWriteBenchmarkTest -Dbeerstock.benchmark=true
+@EnabledIfSystemProperty(named = "beerstock.benchmark", matches = "true")
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=update",
+        "beerstock.write-behind.enabled=true"})
+public class StockWriteBenchmarkTest {
+    private static final int BEERS = 200;
+    private static final int THREADS = 16;
+    private static final int INCREMENTS_PER_THREAD = 1_000;
+
+    @DynamicPropertySource //BD em arquivo e log novos a cada execucao (write-behind nao aceita BD em memoria nem create-drop);
+    static void dataDirectory(DynamicPropertyRegistry registry) throws IOException {
+        Path dataDirectory = Files.createTempDirectory("stock-benchmark");
+        registry.add("spring.datasource.url", () -> "jdbc:h2:file:" + dataDirectory.resolve("beerstock") + ";DB_CLOSE_ON_EXIT=FALSE");
+        registry.add("beerstock.write-behind.journal-directory", () -> dataDirectory.resolve("stock-journal").toString());
+    }
+
+    @Autowired
+    @Qualifier("beerService") //O bean do BeerService (com o proxy do @Transactional), nao o write-behind que e @Primary;
+    private BeerService synchronousBeerService;
+    @Autowired
+    private WriteBehindBeerService writeBehindBeerService;
+
+    @Test
+    void incrementThroughputAndLatency() throws Exception {
+        List<Long> beerIds = new ArrayList<>();
+        for (int i = 0; i < BEERS; i++) {
+            BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name("Benchmark-" + i).max(500).quantity(0).build().toBeerDTO();
+            beerIds.add(synchronousBeerService.createBeer(beerDTO).getId());
+        }
+
+        run("synchronous", synchronousBeerService, beerIds);
+        run("write-behind", writeBehindBeerService, beerIds);
+    }
+
+    private void run(String mode, BeerService beerService, List<Long> beerIds) throws InterruptedException {
+        long[][] latencies = new long[THREADS][INCREMENTS_PER_THREAD];
+        AtomicLong errors = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            long[] threadLatencies = latencies[t];
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                    long operationStart = System.nanoTime();
+                    try {
+                        beerService.increment(beerIds.get(random.nextInt(beerIds.size())), 1);
+                        threadLatencies[i] = System.nanoTime() - operationStart;
+                    } catch (Exception e) { //Falha nao conta como operacao concluida;
+                        threadLatencies[i] = -1;
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        MatcherAssert.assertThat(executor.awaitTermination(10, TimeUnit.MINUTES), is(true));
+        long elapsedNanos = System.nanoTime() - start;
+
+        long[] allLatencies = Arrays.stream(latencies).flatMapToLong(Arrays::stream).filter(latency -> latency >= 0).sorted().toArray();
+        long p50Micros = allLatencies[allLatencies.length / 2] / 1_000;
+        long p99Micros = allLatencies[(int) (allLatencies.length * 0.99) - 1] / 1_000;
+        long throughput = allLatencies.length * 1_000_000_000L / elapsedNanos;
+        System.out.printf("increment mode=%s throughput=%d ops/s p50=%d us p99=%d us errors=%d%n",
+                mode, throughput, p50Micros, p99Micros, errors.get());
+        MatcherAssert.assertThat(errors.get(), is(0L));
+    }
+}
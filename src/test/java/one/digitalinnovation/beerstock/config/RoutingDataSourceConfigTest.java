@@ -0,0 +1,69 @@
+package one.digitalinnovation.beerstock.config;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop") //O perfil nao define ddl-auto: o teste usa o H2 em memoria;
+@ActiveProfiles("performance")
+public class RoutingDataSourceConfigTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    @Qualifier("writeDataSource")
+    private HikariDataSource writeDataSource;
+    @Autowired
+    @Qualifier("readDataSource")
+    private HikariDataSource readDataSource;
+
+    @Test //Teste: transacao readOnly usa uma conexao do pool de leitura;
+    void whenTransactionIsReadOnlyThenReadPoolIsUsed() {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readOnlyTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM beer", Long.class);
+            MatcherAssert.assertThat(activeConnections(readDataSource), is(1));
+            MatcherAssert.assertThat(activeConnections(writeDataSource), is(0));
+        });
+    }
+
+    @Test //Teste: transacao de escrita usa uma conexao do pool de escrita;
+    void whenTransactionIsReadWriteThenWritePoolIsUsed() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM beer", Long.class);
+            MatcherAssert.assertThat(activeConnections(writeDataSource), is(1));
+            MatcherAssert.assertThat(activeConnections(readDataSource), is(0));
+        });
+    }
+
+    @Test //Teste: tamanho do pool pela lei de Little, respeitando os limites;
+    void whenPoolSizeIsDerivedThenLittlesLawIsAppliedWithinBounds() {
+        RoutingDataSourceProperties.Pool pool = new RoutingDataSourceProperties.Pool();
+        pool.setTargetRequestsPerSecond(1000);
+        pool.setConnectionUsageMs(8);
+        pool.setHeadroom(0.25);
+        MatcherAssert.assertThat(pool.poolSize(), is(10));
+
+        pool.setConnectionUsageMs(100);
+        MatcherAssert.assertThat(pool.poolSize(), is(pool.getMaximumSize()));
+
+        pool.setConnectionUsageMs(0.1);
+        MatcherAssert.assertThat(pool.poolSize(), is(pool.getMinimumSize()));
+    }
+
+    private static int activeConnections(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+}
@@ -0,0 +1,238 @@
+package one.digitalinnovation.beerstock.loadtest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.config.RoutingDataSourceProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+import org.springframework.util.FileSystemUtils;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.hamcrest.Matchers.*;
+
+//Teste de carga da API completa (controller, service e H2): mvn test -Pload-test
+//Para gravar um novo baseline na maquina de referencia: mvn test -Pload-test -Dloadtest.updateBaseline=true
+//Cada execucao grava uma medicao; com -Dloadtest.baselineRuns medicoes (5 por padrao), o baseline recebe a mediana delas
+//Sem baseline o teste falha; em outra maquina, grave um proprio: -Dloadtest.baseline=<arquivo> -Dloadtest.updateBaseline=true
+//Para comparar com o perfil performance: mvn test -Pload-test -Dspring.profiles.active=performance
+//As linhas "Pool ..." trazem a taxa e o p95 de uso de cada pool, usados em connection-usage-ms do perfil performance
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jmx.enabled=false",
+        "management.metrics.distribution.percentiles.hikaricp.connections.usage=0.95",
+        "management.metrics.distribution.percentiles.hikaricp.connections.acquire=0.95"})
+public class BeerApiLoadTest {
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+    private static final double FIND_BY_NAME_SHARE_OF_READS = 0.9;
+    private static final double INCREMENT_SHARE_OF_WRITES = 0.7;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BeerRepository beerRepository;
+    @Autowired
+    private Environment environment;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Queue<Long> createdBeerIds = new ConcurrentLinkedQueue<>(); //Cervejas criadas pela carga, que podem ser removidas;
+    private final AtomicLong createdBeerSequence = new AtomicLong();
+    private List<Beer> seededBeers;
+
+    @Test
+    void mixedWorkloadDoesNotRegressPastBaseline() throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        seedBeers(settings.getBeers());
+
+        run(settings, settings.getWarmup()); //Aquecimento do JIT e do pool de conexoes, resultado descartado;
+        Map<String, Long> connectionUsesBefore = connectionUses();
+        LoadTestResult result = run(settings, settings.getDuration());
+
+        System.out.printf("Load test: profiles=%s beers=%d concurrency=%d readRatio=%.2f duration=%ss%n",
+                Arrays.toString(environment.getActiveProfiles()), settings.getBeers(),
+                settings.getConcurrency(), settings.getReadRatio(), settings.getDuration().toSeconds());
+        result.print(System.out);
+        printConnectionUsage(connectionUsesBefore, result.getElapsed());
+        result.writeHistograms(settings.getReportDirectory());
+        LoadTestBaseline.of(result).save(settings.getReportDirectory().resolve("result.properties"));
+
+        MatcherAssert.assertThat(result.getUnexpectedResponses(), is(0L));
+        if (settings.isUpdateBaseline()) {
+            recordBaselineRun(settings, result);
+            return;
+        }
+        LoadTestBaseline baseline = LoadTestBaseline.load(settings.getBaselineFile());
+        MatcherAssert.assertThat(String.format("No baseline at %s: record one on the reference machine with"
+                + " -Dloadtest.updateBaseline=true or point -Dloadtest.baseline at its file", settings.getBaselineFile()),
+                baseline.isEmpty(), is(false));
+        if (!baseline.getMachine().equals(LoadTestBaseline.currentMachine())) {
+            System.out.printf("Baseline recorded on [%s], running on [%s]: differences may come from the machine.%n",
+                    baseline.getMachine(), LoadTestBaseline.currentMachine());
+        }
+        MatcherAssert.assertThat(baseline.findRegressions(result, settings.getTolerance()), is(empty()));
+    }
+
+    //Cada medicao do baseline roda em uma JVM nova, como a execucao normal do teste (o JIT esquenta entre medicoes na mesma JVM);
+    private void recordBaselineRun(LoadTestSettings settings, LoadTestResult result) throws IOException {
+        Path runsDirectory = settings.getReportDirectory().resolve("baseline-runs");
+        LoadTestBaseline.of(result).save(runsDirectory.resolve("run-" + System.currentTimeMillis() + ".properties"));
+        List<LoadTestBaseline> runs = LoadTestBaseline.loadAll(runsDirectory);
+        if (runs.size() < settings.getBaselineRuns()) {
+            System.out.printf("Baseline run %d of %d recorded in %s: run the same command again%n",
+                    runs.size(), settings.getBaselineRuns(), runsDirectory);
+            return;
+        }
+        System.out.printf(Locale.ROOT, "Baseline runs: %s req/s%n", runs.stream()
+                .map(run -> String.format(Locale.ROOT, "%.1f", run.getThroughput()))
+                .collect(Collectors.joining(", ")));
+        LoadTestBaseline.median(runs).save(settings.getBaselineFile());
+        FileSystemUtils.deleteRecursively(runsDirectory); //O proximo baseline comeca do zero;
+    }
+
+    //Medidas para dimensionar os pools (connection-usage-ms do perfil performance): taxa de uso e p95 de cada pool;
+    private void printConnectionUsage(Map<String, Long> connectionUsesBefore, Duration elapsed) {
+        for (Timer usage : meterRegistry.find("hikaricp.connections.usage").timers()) {
+            String poolName = usage.getId().getTag("pool");
+            Timer acquire = meterRegistry.find("hikaricp.connections.acquire").tag("pool", poolName).timer();
+            RoutingDataSourceProperties.Pool measuredPool = new RoutingDataSourceProperties.Pool();
+            measuredPool.setTargetRequestsPerSecond((usage.count() - connectionUsesBefore.getOrDefault(poolName, 0L))
+                    * 1_000_000_000.0 / elapsed.toNanos());
+            measuredPool.setConnectionUsageMs(p95Millis(usage));
+            System.out.printf(Locale.ROOT, "Pool %s: %.0f connections/s usage.p95=%.2f ms acquire.p95=%.2f ms"
+                            + " -> Little's law size=%d%n", poolName, measuredPool.getTargetRequestsPerSecond(),
+                    measuredPool.getConnectionUsageMs(), acquire != null ? p95Millis(acquire) : Double.NaN, measuredPool.poolSize());
+        }
+    }
+
+    private Map<String, Long> connectionUses() {
+        return meterRegistry.find("hikaricp.connections.usage").timers().stream()
+                .collect(Collectors.toMap(timer -> timer.getId().getTag("pool"), Timer::count));
+    }
+
+    private static double p95Millis(Timer timer) {
+        return Arrays.stream(timer.takeSnapshot().percentileValues())
+                .filter(percentile -> percentile.percentile() == 0.95)
+                .mapToDouble(percentile -> percentile.value(TimeUnit.MILLISECONDS))
+                .findFirst()
+                .orElse(Double.NaN);
+    }
+
+    private void seedBeers(int beers) {
+        BeerMapper beerMapper = BeerMapper.INSTANCE;
+        seededBeers = beerRepository.saveAll(IntStream.range(0, beers)
+                .mapToObj(i -> beerMapper.toModel(BeerDTOBuilder.builder().id(null).name("Seed-" + i).max(500).quantity(0).build().toBeerDTO()))
+                .collect(Collectors.toList()));
+    }
+
+    private LoadTestResult run(LoadTestSettings settings, Duration duration) throws InterruptedException {
+        LoadTestResult result = new LoadTestResult();
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(settings.getConcurrency());
+        long start = System.nanoTime();
+        for (int i = 0; i < settings.getConcurrency(); i++) {
+            executor.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    LoadTestOperation operation = nextOperation(settings.getReadRatio());
+                    Long beerIdToDelete = operation == LoadTestOperation.DELETE ? createdBeerIds.poll() : null;
+                    if (operation == LoadTestOperation.DELETE && beerIdToDelete == null) {
+                        operation = LoadTestOperation.CREATE; //Outra thread removeu a ultima cerveja criada;
+                    }
+                    long operationStart = System.nanoTime();
+                    try {
+                        int status = execute(operation, beerIdToDelete);
+                        result.record(operation, (System.nanoTime() - operationStart) / 1_000, status);
+                    } catch (IOException e) {
+                        result.recordFailure(operation, (System.nanoTime() - operationStart) / 1_000);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        result.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        return result;
+    }
+
+    private LoadTestOperation nextOperation(double readRatio) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < readRatio) {
+            return random.nextDouble() < FIND_BY_NAME_SHARE_OF_READS ? LoadTestOperation.FIND_BY_NAME : LoadTestOperation.LIST_BEERS;
+        }
+        if (random.nextDouble() < INCREMENT_SHARE_OF_WRITES) {
+            return LoadTestOperation.INCREMENT;
+        }
+        //Create e delete se alternam, mantendo o tamanho da base estavel;
+        return createdBeerIds.isEmpty() || random.nextBoolean() ? LoadTestOperation.CREATE : LoadTestOperation.DELETE;
+    }
+
+    private int execute(LoadTestOperation operation, Long beerIdToDelete) throws IOException {
+        Beer beer = seededBeers.get(ThreadLocalRandom.current().nextInt(seededBeers.size()));
+        switch (operation) {
+            case FIND_BY_NAME:
+                return send("GET", BEER_API_URL_PATH + "/" + beer.getName(), null).statusCode();
+            case LIST_BEERS:
+                return send("GET", BEER_API_URL_PATH, null).statusCode();
+            case INCREMENT:
+                return send("PATCH", BEER_API_URL_PATH + "/" + beer.getId() + "/increment",
+                        QuantityDTO.builder().quantity(1).build()).statusCode();
+            case CREATE:
+                BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name("Load-" + createdBeerSequence.incrementAndGet()).build().toBeerDTO();
+                HttpResponse<String> response = send("POST", BEER_API_URL_PATH, beerDTO);
+                if (response.statusCode() == 201) {
+                    createdBeerIds.add(objectMapper.readValue(response.body(), BeerDTO.class).getId());
+                }
+                return response.statusCode();
+            case DELETE:
+                return send("DELETE", BEER_API_URL_PATH + "/" + beerIdToDelete, null).statusCode();
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path, Object body) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package one.digitalinnovation.beerstock.loadtest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//Valores de referencia salvos em arquivo; o teste falha quando o resultado piora alem da tolerancia;
+public class LoadTestBaseline {
+    private static final String THROUGHPUT_KEY = "throughput.requestsPerSecond";
+    private static final String P99_KEY_SUFFIX = ".p99Micros";
+    private static final String MACHINE_KEY = "machine";
+    private static final String RUNS_KEY = "runs";
+
+    private final Properties values;
+
+    private LoadTestBaseline(Properties values) {
+        this.values = values;
+    }
+
+    public static LoadTestBaseline load(Path baselineFile) throws IOException {
+        Properties values = new Properties();
+        if (Files.exists(baselineFile)) {
+            try (InputStream in = Files.newInputStream(baselineFile)) {
+                values.load(in);
+            }
+        }
+        return new LoadTestBaseline(values);
+    }
+
+    public static LoadTestBaseline of(LoadTestResult result) {
+        Properties values = new Properties();
+        values.setProperty(MACHINE_KEY, currentMachine());
+        values.setProperty(THROUGHPUT_KEY, String.format(Locale.ROOT, "%.1f", result.getThroughput()));
+        for (LoadTestOperation operation : LoadTestOperation.values()) {
+            if (result.getCount(operation) > 0) {
+                values.setProperty(operation + P99_KEY_SUFFIX, String.valueOf(result.getP99Micros(operation)));
+            }
+        }
+        return new LoadTestBaseline(values);
+    }
+
+    //Baseline com a mediana de cada valor entre varias medicoes: nem a execucao mais lenta nem a mais rapida viram referencia;
+    public static LoadTestBaseline median(List<LoadTestBaseline> runs) {
+        Properties values = new Properties();
+        values.setProperty(MACHINE_KEY, currentMachine());
+        values.setProperty(RUNS_KEY, String.valueOf(runs.size()));
+        values.setProperty(THROUGHPUT_KEY, String.format(Locale.ROOT, "%.1f", median(runs, THROUGHPUT_KEY)));
+        for (LoadTestOperation operation : LoadTestOperation.values()) {
+            if (runs.stream().anyMatch(run -> run.values.containsKey(operation + P99_KEY_SUFFIX))) {
+                values.setProperty(operation + P99_KEY_SUFFIX, String.valueOf(Math.round(median(runs, operation + P99_KEY_SUFFIX))));
+            }
+        }
+        return new LoadTestBaseline(values);
+    }
+
+    //Medicoes salvas com save, em ordem de nome do arquivo;
+    public static List<LoadTestBaseline> loadAll(Path directory) throws IOException {
+        List<LoadTestBaseline> runs = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.sorted().collect(Collectors.toList())) {
+                    runs.add(load(file));
+                }
+            }
+        }
+        return runs;
+    }
+
+    public double getThroughput() {
+        return Double.parseDouble(values.getProperty(THROUGHPUT_KEY, "0"));
+    }
+
+    private static double median(List<LoadTestBaseline> runs, String key) {
+        double[] sortedValues = runs.stream()
+                .filter(run -> run.values.containsKey(key))
+                .mapToDouble(run -> Double.parseDouble(run.values.getProperty(key)))
+                .sorted()
+                .toArray();
+        int middle = sortedValues.length / 2;
+        return sortedValues.length % 2 == 1 ? sortedValues[middle] : (sortedValues[middle - 1] + sortedValues[middle]) / 2;
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    //Os valores so valem na maquina em que foram gravados;
+    public String getMachine() {
+        return values.getProperty(MACHINE_KEY, "unknown");
+    }
+
+    public static String currentMachine() {
+        return String.format("%d CPUs, %s %s, Java %s", Runtime.getRuntime().availableProcessors(),
+                System.getProperty("os.name"), System.getProperty("os.arch"), System.getProperty("java.version"));
+    }
+
+    public List<String> findRegressions(LoadTestResult result, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        String baselineThroughput = values.getProperty(THROUGHPUT_KEY);
+        if (baselineThroughput != null) {
+            double minimumThroughput = Double.parseDouble(baselineThroughput) * (1 - tolerance);
+            if (result.getThroughput() < minimumThroughput) {
+                regressions.add(String.format("throughput %.1f req/s is below %.1f req/s", result.getThroughput(), minimumThroughput));
+            }
+        }
+        for (LoadTestOperation operation : LoadTestOperation.values()) {
+            String baselineP99 = values.getProperty(operation + P99_KEY_SUFFIX);
+            if (baselineP99 != null && result.getCount(operation) > 0) {
+                double maximumP99 = Long.parseLong(baselineP99) * (1 + tolerance);
+                if (result.getP99Micros(operation) > maximumP99) {
+                    regressions.add(String.format("%s p99 %d us is above %.0f us", operation, result.getP99Micros(operation), maximumP99));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    public void save(Path baselineFile) throws IOException {
+        if (baselineFile.getParent() != null) {
+            Files.createDirectories(baselineFile.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(baselineFile)) {
+            values.store(out, "Beer API load test baseline (mvn test -Pload-test -Dloadtest.updateBaseline=true)");
+        }
+    }
+}
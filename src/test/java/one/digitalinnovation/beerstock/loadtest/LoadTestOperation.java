@@ -0,0 +1,18 @@
+package one.digitalinnovation.beerstock.loadtest;
+import lombok.AllArgsConstructor;
+import java.util.Set;
+
+@AllArgsConstructor
+public enum LoadTestOperation {
+    FIND_BY_NAME(Set.of(200)),
+    LIST_BEERS(Set.of(200)),
+    INCREMENT(Set.of(200, 400)), //400: estoque cheio, resposta valida da API;
+    CREATE(Set.of(201)),
+    DELETE(Set.of(204));
+
+    private final Set<Integer> expectedStatuses;
+
+    public boolean isExpected(int status) {
+        return expectedStatuses.contains(status);
+    }
+}
@@ -0,0 +1,85 @@
+package one.digitalinnovation.beerstock.loadtest;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Latencias (em microssegundos) de cada operacao durante uma fase do teste de carga;
+public class LoadTestResult {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Map<LoadTestOperation, Histogram> histograms = new EnumMap<>(LoadTestOperation.class);
+    private final AtomicLong unexpectedResponses = new AtomicLong();
+    private Duration elapsed = Duration.ZERO;
+
+    public LoadTestResult() {
+        for (LoadTestOperation operation : LoadTestOperation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+        }
+    }
+
+    public void record(LoadTestOperation operation, long latencyMicros, int status) {
+        histograms.get(operation).recordValue(latencyMicros);
+        if (!operation.isExpected(status)) {
+            unexpectedResponses.incrementAndGet();
+        }
+    }
+
+    public void recordFailure(LoadTestOperation operation, long latencyMicros) {
+        histograms.get(operation).recordValue(latencyMicros);
+        unexpectedResponses.incrementAndGet();
+    }
+
+    public void setElapsed(Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    public long getUnexpectedResponses() {
+        return unexpectedResponses.get();
+    }
+
+    public long getTotalCount() {
+        return histograms.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    public double getThroughput() {
+        return elapsed.isZero() ? 0 : getTotalCount() * 1_000_000_000.0 / elapsed.toNanos();
+    }
+
+    public long getCount(LoadTestOperation operation) {
+        return histograms.get(operation).getTotalCount();
+    }
+
+    public long getP99Micros(LoadTestOperation operation) {
+        return histograms.get(operation).getValueAtPercentile(99.0);
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-14s %10s %10s %10s %10s%n", "operation", "count", "p50(us)", "p99(us)", "max(us)");
+        histograms.forEach((operation, histogram) -> out.printf("%-14s %10d %10d %10d %10d%n", operation,
+                histogram.getTotalCount(), histogram.getValueAtPercentile(50.0),
+                histogram.getValueAtPercentile(99.0), histogram.getMaxValue()));
+        out.printf("throughput=%.1f req/s unexpectedResponses=%d%n", getThroughput(), getUnexpectedResponses());
+    }
+
+    //Um arquivo .hgrm por operacao (valores em ms), para comparar no HdrHistogram plotter;
+    public void writeHistograms(Path reportDirectory) throws IOException {
+        Files.createDirectories(reportDirectory);
+        for (Map.Entry<LoadTestOperation, Histogram> entry : histograms.entrySet()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(reportDirectory.resolve(entry.getKey() + ".hgrm")))) {
+                entry.getValue().outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package one.digitalinnovation.beerstock.loadtest;
+import lombok.Builder;
+import lombok.Getter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+//Parametros do teste de carga, lidos das system properties (ex: mvn test -Pload-test -Dloadtest.concurrency=32);
+@Getter
+@Builder
+public class LoadTestSettings {
+    private final int beers;
+    private final int concurrency;
+    private final double readRatio;
+    private final Duration warmup;
+    private final Duration duration;
+    private final double tolerance;
+    private final Path baselineFile;
+    private final Path reportDirectory;
+    private final boolean updateBaseline;
+    private final int baselineRuns; //Medicoes usadas no baseline (a mediana de cada valor): uma execucao so varia demais;
+
+    public static LoadTestSettings fromSystemProperties() {
+        return LoadTestSettings.builder()
+                .beers(Integer.getInteger("loadtest.beers", 200))
+                .concurrency(Integer.getInteger("loadtest.concurrency", 16))
+                .readRatio(Double.parseDouble(System.getProperty("loadtest.readRatio", "0.8")))
+                .warmup(Duration.ofSeconds(Long.getLong("loadtest.warmupSeconds", 5L)))
+                .duration(Duration.ofSeconds(Long.getLong("loadtest.durationSeconds", 20L)))
+                .tolerance(Double.parseDouble(System.getProperty("loadtest.tolerance", "0.25")))
+                .baselineFile(Paths.get(System.getProperty("loadtest.baseline", "src/test/resources/loadtest/baseline.properties")))
+                .reportDirectory(Paths.get(System.getProperty("loadtest.reportDirectory", "target/loadtest")))
+                .updateBaseline(Boolean.getBoolean("loadtest.updateBaseline"))
+                .baselineRuns(Integer.getInteger("loadtest.baselineRuns", 5))
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package one.digitalinnovation.beerstock.service;
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConsistentHashRingTest {
+    private static final int VIRTUAL_NODES = 128;
+    private static final int KEYS = 10_000;
+    private static final List<String> NODES = List.of("http://localhost:8080", "http://localhost:8081", "http://localhost:8082");
+
+    @Test //Teste: a mesma chave sempre cai na mesma instancia;
+    void whenSameKeyIsGivenThenSameOwnerIsReturned() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, VIRTUAL_NODES);
+        ConsistentHashRing sameRing = new ConsistentHashRing(List.of(NODES.get(2), NODES.get(0), NODES.get(1)), VIRTUAL_NODES);
+        MatcherAssert.assertThat(ring.ownerOf("Brahma"), is(equalTo(sameRing.ownerOf("Brahma"))));
+    }
+
+    @Test //Teste: as chaves sao distribuidas entre todas as instancias;
+    void whenManyKeysAreGivenThenTheyAreSpreadAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, VIRTUAL_NODES);
+        Map<String, Integer> keysPerNode = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            keysPerNode.merge(ring.ownerOf("beer-" + i), 1, Integer::sum);
+        }
+        MatcherAssert.assertThat(keysPerNode.keySet(), containsInAnyOrder(NODES.toArray()));
+        keysPerNode.values().forEach(count -> MatcherAssert.assertThat(count, is(greaterThan(KEYS / NODES.size() / 2))));
+    }
+
+    @Test //Teste: quando uma instancia sai, so as chaves dela mudam de dono;
+    void whenNodeLeavesThenOnlyItsKeysMove() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, VIRTUAL_NODES);
+        ConsistentHashRing ringWithoutLastNode = new ConsistentHashRing(NODES.subList(0, 2), VIRTUAL_NODES);
+        for (int i = 0; i < KEYS; i++) {
+            String owner = ring.ownerOf("beer-" + i);
+            if (!owner.equals(NODES.get(2))) {
+                MatcherAssert.assertThat(ringWithoutLastNode.ownerOf("beer-" + i), is(equalTo(owner)));
+            }
+        }
+    }
+
+    @Test //Teste: anel sem instancias nao tem dono para nenhuma chave;
+    void whenRingIsEmptyThenThrowException() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), VIRTUAL_NODES);
+        assertThrows(IllegalStateException.class, () -> ring.ownerOf("Brahma"));
+    }
+}
@@ -0,0 +1,240 @@
+package one.digitalinnovation.beerstock.service;
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StockJournalTest {
+    private static final int MAX_GROUP_COMMIT_SIZE = 64;
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test //Teste: registros gravados voltam na reabertura, valendo a ultima quantidade de cada cerveja;
+    void whenJournalIsReopenedThenLatestQuantitiesAreRecovered() throws IOException {
+        try (StockJournal stockJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE)) {
+            stockJournal.append(1L, 10);
+            stockJournal.append(2L, 5);
+            stockJournal.append(1L, 20);
+        }
+        try (StockJournal reopenedJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE)) {
+            MatcherAssert.assertThat(reopenedJournal.getRecoveredQuantities(), allOf(hasEntry(1L, 20), hasEntry(2L, 5)));
+            MatcherAssert.assertThat(reopenedJournal.getRecoveredQuantities().size(), is(2));
+        }
+    }
+
+    @Test //Teste: registro incompleto no fim do arquivo (queda no meio da escrita) e ignorado;
+    void whenLastRecordIsTornThenItIsIgnored() throws IOException {
+        List<Path> segments;
+        try (StockJournal stockJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE)) {
+            stockJournal.append(1L, 10);
+            segments = stockJournal.sealSegment();
+        }
+        Files.write(segments.get(0), new byte[]{0, 0, 0, 0, 0, 0, 0, 1, 0, 0}, StandardOpenOption.APPEND);
+        try (StockJournal reopenedJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE)) {
+            MatcherAssert.assertThat(reopenedJournal.getRecoveredQuantities(), hasEntry(1L, 10));
+            MatcherAssert.assertThat(reopenedJournal.getRecoveredQuantities().size(), is(1));
+        }
+    }
+
+    @Test //Teste: segmentos apagados depois do flush nao voltam na reabertura;
+    void whenSealedSegmentsAreDeletedThenNothingIsRecovered() throws IOException {
+        try (StockJournal stockJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE)) {
+            stockJournal.append(1L, 10);
+            List<Path> sealedSegments = stockJournal.sealSegment();
+            MatcherAssert.assertThat(sealedSegments, hasSize(1));
+            stockJournal.deleteSegments(sealedSegments);
+        }
+        try (StockJournal reopenedJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE)) {
+            MatcherAssert.assertThat(reopenedJournal.getRecoveredQuantities().isEmpty(), is(true));
+        }
+    }
+
+    @Test //Teste: depois de fechado, o log nao aceita novos registros;
+    void whenJournalIsClosedThenAppendThrowsException() throws IOException {
+        StockJournal stockJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE);
+        stockJournal.close();
+        assertThrows(IOException.class, () -> stockJournal.append(1L, 10));
+    }
+
+    @Test //Teste: escrita que falha no meio nao deixa bytes quebrados antes dos proximos registros confirmados;
+    void whenWriteFailsHalfwayThenLaterRecordsAreRecovered() throws IOException {
+        FailingChannels channels = new FailingChannels();
+        try (StockJournal stockJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE, channels::open)) {
+            stockJournal.append(1L, 10);
+            channels.failWrite = true;
+            assertThrows(IOException.class, () -> stockJournal.append(1L, 99));
+            channels.failWrite = false;
+            stockJournal.append(2L, 5);
+        }
+        try (StockJournal reopenedJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE)) {
+            MatcherAssert.assertThat(reopenedJournal.getRecoveredQuantities(), allOf(hasEntry(1L, 10), hasEntry(2L, 5)));
+            MatcherAssert.assertThat(reopenedJournal.getRecoveredQuantities().size(), is(2));
+        }
+    }
+
+    @Test //Teste: registro cujo fsync falhou (nao confirmado) nao volta na reabertura;
+    void whenForceFailsThenFailedRecordIsNotReplayed() throws IOException {
+        FailingChannels channels = new FailingChannels();
+        try (StockJournal stockJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE, channels::open)) {
+            stockJournal.append(1L, 10);
+            channels.failForce = true;
+            assertThrows(IOException.class, () -> stockJournal.append(1L, 99));
+            channels.failForce = false;
+            stockJournal.append(2L, 5);
+        }
+        try (StockJournal reopenedJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE)) {
+            MatcherAssert.assertThat(reopenedJournal.getRecoveredQuantities(), allOf(hasEntry(1L, 10), hasEntry(2L, 5)));
+        }
+    }
+
+    @Test //Teste: sem conseguir truncar, os proximos registros vao para um segmento novo e continuam legiveis;
+    void whenTruncateAlsoFailsThenJournalRollsToNewSegment() throws IOException {
+        FailingChannels channels = new FailingChannels();
+        try (StockJournal stockJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE, channels::open)) {
+            stockJournal.append(1L, 10);
+            channels.failWrite = true;
+            channels.failTruncate = true;
+            assertThrows(IOException.class, () -> stockJournal.append(1L, 99));
+            channels.failWrite = false;
+            channels.failTruncate = false;
+            stockJournal.append(2L, 5);
+            MatcherAssert.assertThat(stockJournal.sealSegment(), hasSize(2));
+        }
+        try (StockJournal reopenedJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE)) {
+            MatcherAssert.assertThat(reopenedJournal.getRecoveredQuantities(), allOf(hasEntry(1L, 10), hasEntry(2L, 5)));
+        }
+    }
+
+    //Abre canais de verdade que falham sob demanda (escrita pela metade, fsync ou truncate);
+    private static class FailingChannels {
+        private volatile boolean failWrite;
+        private volatile boolean failForce;
+        private volatile boolean failTruncate;
+
+        FileChannel open(Path segment) throws IOException {
+            return new FailingFileChannel(FileChannel.open(segment,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        }
+
+        private class FailingFileChannel extends FileChannel {
+            private final FileChannel delegate;
+
+            FailingFileChannel(FileChannel delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (failWrite) {
+                    ByteBuffer half = src.duplicate();
+                    half.limit(src.position() + src.remaining() / 2);
+                    int written = delegate.write(half);
+                    src.position(src.position() + written);
+                    throw new IOException("Simulated write failure.");
+                }
+                return delegate.write(src);
+            }
+
+            @Override
+            public void force(boolean metaData) throws IOException {
+                if (failForce) {
+                    throw new IOException("Simulated force failure.");
+                }
+                delegate.force(metaData);
+            }
+
+            @Override
+            public FileChannel truncate(long size) throws IOException {
+                if (failTruncate) {
+                    throw new IOException("Simulated truncate failure.");
+                }
+                delegate.truncate(size);
+                return this;
+            }
+
+            @Override
+            public long size() throws IOException {
+                return delegate.size();
+            }
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                return delegate.read(dst);
+            }
+
+            @Override
+            public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+                return delegate.read(dsts, offset, length);
+            }
+
+            @Override
+            public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+                return delegate.write(srcs, offset, length);
+            }
+
+            @Override
+            public long position() throws IOException {
+                return delegate.position();
+            }
+
+            @Override
+            public FileChannel position(long newPosition) throws IOException {
+                delegate.position(newPosition);
+                return this;
+            }
+
+            @Override
+            public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+                return delegate.transferTo(position, count, target);
+            }
+
+            @Override
+            public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+                return delegate.transferFrom(src, position, count);
+            }
+
+            @Override
+            public int read(ByteBuffer dst, long position) throws IOException {
+                return delegate.read(dst, position);
+            }
+
+            @Override
+            public int write(ByteBuffer src, long position) throws IOException {
+                return delegate.write(src, position);
+            }
+
+            @Override
+            public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+                return delegate.map(mode, position, size);
+            }
+
+            @Override
+            public FileLock lock(long position, long size, boolean shared) throws IOException {
+                return delegate.lock(position, size, shared);
+            }
+
+            @Override
+            public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+                return delegate.tryLock(position, size, shared);
+            }
+
+            @Override
+            protected void implCloseChannel() throws IOException {
+                delegate.close();
+            }
+        }
+    }
+}
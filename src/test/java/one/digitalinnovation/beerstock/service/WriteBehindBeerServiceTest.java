@@ -0,0 +1,176 @@
+package one.digitalinnovation.beerstock.service;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindBeerServiceTest {
+    private static final int MAX_GROUP_COMMIT_SIZE = 64;
+
+    @TempDir
+    Path journalDirectory;
+
+    @Mock
+    private BeerRepository beerRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+    private StockJournal stockJournal;
+    private WriteBehindBeerService writeBehindBeerService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stockJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE);
+        writeBehindBeerService = new WriteBehindBeerService(beerRepository, stockJournal, jdbcTemplate,
+                TransactionOperations.withoutTransaction());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        stockJournal.close();
+    }
+
+    @Test //Teste: o increment e confirmado sem gravar na tabela, e a busca ja mostra a nova quantidade;
+    void whenIncrementIsCalledThenStockIsUpdatedWithoutSavingTheBeer() throws Exception {
+        //given:
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Mockito.when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(beerMapper.toModel(expectedBeerDTO)));
+        Mockito.when(beerRepository.findByName(expectedBeerDTO.getName())).thenReturn(Optional.of(beerMapper.toModel(expectedBeerDTO)));
+        //when:
+        BeerDTO incrementedBeerDTO = writeBehindBeerService.increment(expectedBeerDTO.getId(), 10);
+        //then:
+        MatcherAssert.assertThat(incrementedBeerDTO.getQuantity(), is(expectedBeerDTO.getQuantity() + 10));
+        MatcherAssert.assertThat(writeBehindBeerService.findByName(expectedBeerDTO.getName()).getQuantity(),
+                is(expectedBeerDTO.getQuantity() + 10));
+        Mockito.verify(beerRepository, Mockito.never()).save(ArgumentMatchers.any(Beer.class));
+    }
+
+    @Test //Teste: increments concorrentes nunca passam do limite max;
+    void whenConcurrentIncrementsAreCalledThenMaxIsNeverExceeded() throws Exception {
+        //given:
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().quantity(0).build().toBeerDTO();
+        Mockito.when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(beerMapper.toModel(expectedBeerDTO)));
+        AtomicInteger acceptedIncrements = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        //when:
+        for (int i = 0; i < 200; i++) {
+            executor.execute(() -> {
+                try {
+                    writeBehindBeerService.increment(expectedBeerDTO.getId(), 1);
+                    acceptedIncrements.incrementAndGet();
+                } catch (BeerStockExceededException | BeerNotFoundException ignored) {
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        //then:
+        MatcherAssert.assertThat(acceptedIncrements.get(), is(expectedBeerDTO.getMax()));
+        assertThrows(BeerStockExceededException.class, () -> writeBehindBeerService.increment(expectedBeerDTO.getId(), 1));
+    }
+
+    @Test //Teste: o flush grava em lote a quantidade final de cada cerveja alterada;
+    void whenFlushIsCalledThenQuantitiesAreWrittenInOneBatch() throws Exception {
+        //given:
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Mockito.when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(beerMapper.toModel(expectedBeerDTO)));
+        writeBehindBeerService.increment(expectedBeerDTO.getId(), 5);
+        writeBehindBeerService.increment(expectedBeerDTO.getId(), 5);
+        //when:
+        writeBehindBeerService.flush();
+        //then:
+        List<Object[]> writtenQuantities = captureBatchUpdate();
+        MatcherAssert.assertThat(writtenQuantities, hasSize(1));
+        MatcherAssert.assertThat(writtenQuantities.get(0), is(arrayContaining(new Object[]{expectedBeerDTO.getQuantity() + 10, expectedBeerDTO.getId()})));
+        MatcherAssert.assertThat(stockJournal.sealSegment(), is(empty()));
+    }
+
+    @Test //Teste: increment depois do delete nao recarrega a linha, mesmo que ela ainda seja lida (delete sem commit);
+    void whenBeerIsDeletedThenIncrementIsNotFound() throws Exception {
+        //given:
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Mockito.when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(beerMapper.toModel(expectedBeerDTO)));
+        writeBehindBeerService.increment(expectedBeerDTO.getId(), 5);
+        //when:
+        writeBehindBeerService.deleteById(expectedBeerDTO.getId());
+        //then:
+        assertThrows(BeerNotFoundException.class, () -> writeBehindBeerService.increment(expectedBeerDTO.getId(), 1));
+        writeBehindBeerService.flush();
+        Mockito.verify(jdbcTemplate, Mockito.never()).batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<List<Object[]>>any());
+    }
+
+    @Test //Teste: se o delete voltar atras, a cerveja continua com o estoque que estava na memoria;
+    void whenDeleteIsRolledBackThenStockIsKept() throws Exception {
+        //given:
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Mockito.when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(beerMapper.toModel(expectedBeerDTO)));
+        writeBehindBeerService.increment(expectedBeerDTO.getId(), 5);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writeBehindBeerService.deleteById(expectedBeerDTO.getId());
+            assertThrows(BeerNotFoundException.class, () -> writeBehindBeerService.increment(expectedBeerDTO.getId(), 1));
+            //when:
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        //then:
+        MatcherAssert.assertThat(writeBehindBeerService.increment(expectedBeerDTO.getId(), 1).getQuantity(),
+                is(expectedBeerDTO.getQuantity() + 6));
+    }
+
+    @Test //Teste: quantidades que ficaram so no log (queda antes do flush) sao gravadas na inicializacao;
+    void whenJournalHasUnflushedQuantitiesThenTheyAreRecovered() throws Exception {
+        //given:
+        stockJournal.append(1L, 42);
+        stockJournal.close();
+        stockJournal = new StockJournal(journalDirectory, MAX_GROUP_COMMIT_SIZE);
+        WriteBehindBeerService restartedService = new WriteBehindBeerService(beerRepository, stockJournal, jdbcTemplate,
+                TransactionOperations.withoutTransaction());
+        //when:
+        restartedService.recover();
+        //then:
+        List<Object[]> writtenQuantities = captureBatchUpdate();
+        MatcherAssert.assertThat(writtenQuantities, hasSize(1));
+        MatcherAssert.assertThat(writtenQuantities.get(0), is(arrayContaining(new Object[]{42, 1L})));
+        MatcherAssert.assertThat(stockJournal.sealSegment(), is(empty()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> captureBatchUpdate() {
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(jdbcTemplate).batchUpdate(ArgumentMatchers.anyString(), captor.capture());
+        return captor.getValue();
+    }
+}